@@ -0,0 +1,93 @@
+package com.redhat.coolstore.catalog.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Mapping and serialization of the catalog, as done by CatalogServiceImpl and ApiVerticle for GET /products.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductMappingBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    int catalogSize;
+
+    private List<JsonObject> documents;
+
+    private List<Product> products;
+
+    private JsonArray json;
+
+    @Setup
+    public void setup() {
+        documents = Products.documents(catalogSize);
+        products = Products.products(catalogSize);
+        json = toJsonArray();
+    }
+
+    @Benchmark
+    public void productFromJson(Blackhole blackhole) {
+        for (JsonObject document : documents) {
+            blackhole.consume(new Product(document));
+        }
+    }
+
+    @Benchmark
+    public void productToJson(Blackhole blackhole) {
+        for (Product product : products) {
+            blackhole.consume(product.toJson());
+        }
+    }
+
+    @Benchmark
+    public JsonArray jsonArrayAssembly() {
+        return toJsonArray();
+    }
+
+    @Benchmark
+    public String encodePrettily() {
+        return json.encodePrettily();
+    }
+
+    @Benchmark
+    public String encode() {
+        return json.encode();
+    }
+
+    @Benchmark
+    public String getProductsResponse() {
+        return toJsonArray().encode();
+    }
+
+    private JsonArray toJsonArray() {
+        JsonArray array = new JsonArray();
+        products.stream()
+                .map(p -> p.toJson())
+                .forEach(p -> array.add(p));
+        return array;
+    }
+
+}
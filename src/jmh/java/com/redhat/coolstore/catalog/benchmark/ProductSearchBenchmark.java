@@ -0,0 +1,51 @@
+package com.redhat.coolstore.catalog.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.redhat.coolstore.catalog.model.Product;
+import com.redhat.coolstore.catalog.search.ProductSearchIndex;
+
+/**
+ * Typeahead search, as done by ApiVerticle for GET /products/search. A one letter prefix matches the whole catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductSearchBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int catalogSize;
+
+    @Param({"p", "product", "product 12"})
+    String query;
+
+    private ProductSearchIndex index;
+
+    @Setup
+    public void setup() {
+        index = new ProductSearchIndex();
+        index.load(Products.products(catalogSize));
+    }
+
+    @Benchmark
+    public List<Product> search() {
+        return index.search(query, 20);
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.redhat.coolstore.catalog.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+import io.vertx.core.json.JsonObject;
+
+final class Products {
+
+    private Products() {
+    }
+
+    static JsonObject document(int i) {
+        return new JsonObject()
+                .put("itemId", String.format("%06d", i))
+                .put("name", "Product name " + i)
+                .put("desc", "A description of product " + i + " long enough to be representative of the catalog")
+                .put("price", 10.0 + i % 100);
+    }
+
+    static List<JsonObject> documents(int size) {
+        List<JsonObject> documents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            documents.add(document(i));
+        }
+        return documents;
+    }
+
+    static List<Product> products(int size) {
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(new Product(document(i)));
+        }
+        return products;
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.redhat.coolstore.catalog.benchmark;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.redhat.coolstore.catalog.model.Product;
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+import com.redhat.coolstore.catalog.verticle.service.LocalCatalogServiceProxy;
+import com.redhat.coolstore.catalog.verticle.service.LocalMessageCodec;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ProxyHelper;
+
+/**
+ * Round trip of a catalog service call over the event bus, through the generated proxy and through the local
+ * proxy, against an in-memory service so that only the event bus and the marshalling are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceProxyBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int catalogSize;
+
+    private Vertx vertx;
+
+    private CatalogService proxy;
+
+    private CatalogService localProxy;
+
+    @Setup
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        vertx.eventBus().registerCodec(new LocalMessageCodec());
+        CatalogService service = new InMemoryCatalogService(Products.products(catalogSize));
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        vertx.deployVerticle(new AbstractVerticle() {
+            @Override
+            public void start() {
+                ProxyHelper.registerService(CatalogService.class, vertx, service, CatalogService.ADDRESS);
+                LocalCatalogServiceProxy.registerService(vertx, service);
+            }
+        }, ar -> deployed.complete(ar.result()));
+        deployed.get(10, TimeUnit.SECONDS);
+        proxy = CatalogService.createProxy(vertx);
+        localProxy = CatalogService.createLocalProxy(vertx);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(ar -> closed.complete(null));
+        closed.get(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public List<Product> eventBusProxy() throws Exception {
+        CompletableFuture<List<Product>> result = new CompletableFuture<>();
+        proxy.getProducts(ar -> complete(result, ar));
+        return result.get(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public List<Product> localProxy() throws Exception {
+        CompletableFuture<List<Product>> result = new CompletableFuture<>();
+        localProxy.getProducts(ar -> complete(result, ar));
+        return result.get(10, TimeUnit.SECONDS);
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, AsyncResult<T> ar) {
+        if (ar.succeeded()) {
+            future.complete(ar.result());
+        } else {
+            future.completeExceptionally(ar.cause());
+        }
+    }
+
+    private static class InMemoryCatalogService implements CatalogService {
+
+        private final List<Product> products;
+
+        private InMemoryCatalogService(List<Product> products) {
+            this.products = products;
+        }
+
+        @Override
+        public void getProducts(Handler<AsyncResult<List<Product>>> resulthandler) {
+            resulthandler.handle(Future.succeededFuture(products));
+        }
+
+        @Override
+        public void getProduct(String itemId, Handler<AsyncResult<Product>> resulthandler) {
+            resulthandler.handle(Future.succeededFuture(products.get(0)));
+        }
+
+        @Override
+        public void getProductsWithFields(List<String> fields,
+                Handler<AsyncResult<List<JsonObject>>> resulthandler) {
+            resulthandler.handle(Future.succeededFuture(products.stream()
+                    .map(p -> p.toJson(fields))
+                    .collect(Collectors.toList())));
+        }
+
+        @Override
+        public void getProductWithFields(String itemId, List<String> fields,
+                Handler<AsyncResult<JsonObject>> resulthandler) {
+            resulthandler.handle(Future.succeededFuture(products.get(0).toJson(fields)));
+        }
+
+        @Override
+        public void getProductsByIds(List<String> itemIds, Handler<AsyncResult<List<Product>>> resulthandler) {
+            resulthandler.handle(Future.succeededFuture(products));
+        }
+
+        @Override
+        public void addProduct(Product product, Handler<AsyncResult<String>> resulthandler) {
+            resulthandler.handle(Future.succeededFuture());
+        }
+
+        @Override
+        public void addProducts(List<Product> products, Handler<AsyncResult<JsonObject>> resulthandler) {
+            resulthandler.handle(Future.succeededFuture(new JsonObject()));
+        }
+
+        @Override
+        public void getProductPage(String after, int limit, Handler<AsyncResult<List<JsonObject>>> resulthandler) {
+            resulthandler.handle(Future.succeededFuture(products.stream()
+                    .limit(limit)
+                    .map(Product::toJson)
+                    .collect(Collectors.toList())));
+        }
+
+        @Override
+        public void getChanges(long since, int limit, Handler<AsyncResult<JsonObject>> resulthandler) {
+            resulthandler.handle(Future.succeededFuture(new JsonObject().put("version", since)));
+        }
+
+        @Override
+        public void ping(Handler<AsyncResult<String>> resultHandler) {
+            resultHandler.handle(Future.succeededFuture("OK"));
+        }
+    }
+
+}
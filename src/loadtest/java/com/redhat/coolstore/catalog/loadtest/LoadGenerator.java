@@ -0,0 +1,298 @@
+package com.redhat.coolstore.catalog.loadtest;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+
+/**
+ * Sends a mix of catalog requests at a fixed rate and records their latencies.
+ * <p/>
+ * Request {@code i} is scheduled to be sent at {@code start + i / rate}, whatever happened to the previous requests,
+ * and its latency is measured from that scheduled time rather than from the time it was actually sent. A server
+ * which stalls delays the requests queued behind the stall, and their waiting time is counted, instead of being
+ * hidden by a load generator which would wait for the stall to end before sending more (coordinated omission). The
+ * service time, from the actual send, is recorded as well: the gap between both shows the queueing.
+ * <p/>
+ * Requests scheduled during the warmup are sent but not recorded.
+ */
+class LoadGenerator extends AbstractVerticle {
+
+    enum Operation {
+        GET_PRODUCTS("GET /products", "get-products"),
+        GET_PRODUCT("GET /product/:itemId", "get-product"),
+        ADD_PRODUCT("POST /product", "post-product");
+
+        final String label;
+
+        final String file;
+
+        Operation(String label, String file) {
+            this.label = label;
+            this.file = file;
+        }
+    }
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    // the scheduler catches up on the requests due at each tick
+    private static final long TICK = 1;
+
+    private final LoadTest.Options options;
+
+    private final int[] cumulativeWeights;
+
+    private final SplittableRandom random;
+
+    private final Histogram[] latencies = new Histogram[Operation.values().length];
+
+    private final Histogram[] serviceTimes = new Histogram[Operation.values().length];
+
+    private final long[] errors = new long[Operation.values().length];
+
+    private final CompletableFuture<Report> report = new CompletableFuture<>();
+
+    private HttpClient client;
+
+    private long start;
+
+    private long measureStart;
+
+    private long interval;
+
+    private long total;
+
+    private long sent;
+
+    private long inFlight;
+
+    private long lastCompletion;
+
+    private long timer;
+
+    LoadGenerator(LoadTest.Options options) {
+        this.options = options;
+        int[] weights = options.weights();
+        this.cumulativeWeights = new int[weights.length];
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulativeWeights[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("The mix must have a positive weight, got " + options.mix);
+        }
+        this.random = new SplittableRandom(options.seed);
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+            serviceTimes[i] = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        }
+    }
+
+    /**
+     * Completes once all the requests are answered or timed out.
+     */
+    CompletableFuture<Report> report() {
+        return report;
+    }
+
+    @Override
+    public void start() {
+        client = vertx.createHttpClient(new HttpClientOptions()
+                .setDefaultHost("localhost")
+                .setDefaultPort(options.port)
+                .setKeepAlive(true)
+                .setMaxPoolSize(options.connections));
+        interval = TimeUnit.SECONDS.toNanos(1) / options.rate;
+        total = (long) (options.warmup + options.duration) * options.rate;
+        start = System.nanoTime();
+        measureStart = start + TimeUnit.SECONDS.toNanos(options.warmup);
+        timer = vertx.setPeriodic(TICK, id -> schedule());
+    }
+
+    @Override
+    public void stop() {
+        vertx.cancelTimer(timer);
+        client.close();
+    }
+
+    private void schedule() {
+        long due = Math.min(total, (System.nanoTime() - start) / interval + 1);
+        while (sent < due) {
+            send(start + sent * interval);
+            sent++;
+        }
+        if (sent == total) {
+            vertx.cancelTimer(timer);
+            completeWhenDone();
+        }
+    }
+
+    private void send(long scheduled) {
+        Operation operation = next();
+        HttpClientRequest request;
+        switch (operation) {
+            case GET_PRODUCTS:
+                request = client.get("/products");
+                break;
+            case GET_PRODUCT:
+                request = client.get("/product/" + LoadTest.itemId(random.nextInt(options.products)));
+                break;
+            default:
+                request = client.post("/product").putHeader("Content-Type", "application/json");
+                break;
+        }
+        inFlight++;
+        Pending pending = new Pending(operation, scheduled);
+        request.setTimeout(options.timeout)
+                .handler(response -> response
+                        .exceptionHandler(t -> complete(pending, false))
+                        .bodyHandler(body -> complete(pending, response.statusCode() < 400)))
+                .exceptionHandler(t -> complete(pending, false));
+        pending.sentAt = System.nanoTime();
+        if (operation == Operation.ADD_PRODUCT) {
+            // updates existing products, so that the catalog keeps its size
+            request.end(LoadTest.product(random.nextInt(options.products), 10.0 + random.nextInt(10000) / 100.0)
+                    .encode());
+        } else {
+            request.end();
+        }
+    }
+
+    private Operation next() {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return Operation.values()[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private void complete(Pending pending, boolean succeeded) {
+        if (pending.completed) {
+            return;
+        }
+        pending.completed = true;
+        long now = System.nanoTime();
+        inFlight--;
+        int operation = pending.operation.ordinal();
+        if (pending.scheduled >= measureStart) {
+            lastCompletion = Math.max(lastCompletion, now);
+            if (succeeded) {
+                latencies[operation].recordValue(micros(now - pending.scheduled));
+                serviceTimes[operation].recordValue(micros(now - pending.sentAt));
+            } else {
+                errors[operation]++;
+            }
+        }
+        if (sent == total) {
+            completeWhenDone();
+        }
+    }
+
+    private void completeWhenDone() {
+        if (inFlight == 0 && !report.isDone()) {
+            report.complete(new Report(this));
+        }
+    }
+
+    private static long micros(long nanos) {
+        return Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    private static class Pending {
+
+        private final Operation operation;
+
+        private final long scheduled;
+
+        private long sentAt;
+
+        // a failed response may be reported twice, by the response and by the request
+        private boolean completed;
+
+        private Pending(Operation operation, long scheduled) {
+            this.operation = operation;
+            this.scheduled = scheduled;
+        }
+    }
+
+    /**
+     * Latencies and errors of the measured requests, copied from the event loop of the generator.
+     */
+    static class Report {
+
+        private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+        private final Histogram[] latencies;
+
+        private final Histogram[] serviceTimes;
+
+        private final long[] errors;
+
+        private final double seconds;
+
+        private Report(LoadGenerator generator) {
+            this.latencies = new Histogram[generator.latencies.length];
+            this.serviceTimes = new Histogram[generator.serviceTimes.length];
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = generator.latencies[i].copy();
+                serviceTimes[i] = generator.serviceTimes[i].copy();
+            }
+            this.errors = generator.errors.clone();
+            this.seconds = Math.max(1, generator.lastCompletion - generator.measureStart) / 1e9;
+        }
+
+        void print(PrintStream out) {
+            Histogram all = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+            long allErrors = 0;
+            out.println("Latency, from the scheduled send (ms):");
+            printHeader(out);
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = latencies[operation.ordinal()];
+                print(out, operation.label, histogram, errors[operation.ordinal()]);
+                all.add(histogram);
+                allErrors += errors[operation.ordinal()];
+            }
+            print(out, "all", all, allErrors);
+            out.println();
+            out.println("Service time, from the actual send (ms):");
+            printHeader(out);
+            for (Operation operation : Operation.values()) {
+                print(out, operation.label, serviceTimes[operation.ordinal()], errors[operation.ordinal()]);
+            }
+        }
+
+        private void printHeader(PrintStream out) {
+            out.println(String.format(Locale.ROOT, "%-22s %9s %7s %9s %9s %9s %9s %9s %9s %9s", "operation", "count",
+                    "errors", "req/s", "p50", "p90", "p99", "p99.9", "p99.99", "max"));
+        }
+
+        private void print(PrintStream out, String label, Histogram histogram, long errors) {
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-22s %9d %7d %9.1f", label,
+                    histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(Locale.ROOT, " %9.3f", histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            line.append(String.format(Locale.ROOT, " %9.3f", histogram.getMaxValue() / 1000.0));
+            out.println(line);
+        }
+
+        /**
+         * Writes the latency distribution of an operation in the HdrHistogram percentile format, in milliseconds.
+         */
+        void writeDistribution(Operation operation, PrintStream out) {
+            latencies[operation.ordinal()].outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+}
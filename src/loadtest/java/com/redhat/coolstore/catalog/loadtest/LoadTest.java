@@ -0,0 +1,220 @@
+package com.redhat.coolstore.catalog.loadtest;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.redhat.coolstore.catalog.verticle.MainVerticle;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.MongoClient;
+
+/**
+ * Seeds a MongoDB with a catalog, starts the service on it and runs a {@link LoadGenerator} against it.
+ * <p/>
+ * Arguments are {@code name=value} pairs, see {@link Options}. An embedded MongoDB is started unless a
+ * {@code connection_string} is given.
+ */
+public class LoadTest {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        MongodExecutable mongo = null;
+        String connectionString = options.connectionString;
+        if (connectionString == null) {
+            IMongodConfig config = new MongodConfigBuilder().version(Version.Main.PRODUCTION)
+                    .net(new Net(options.mongoPort, Network.localhostIsIPv6())).build();
+            mongo = MongodStarter.getDefaultInstance().prepare(config);
+            mongo.start();
+            connectionString = "mongodb://localhost:" + options.mongoPort;
+        }
+
+        Vertx vertx = Vertx.vertx();
+        try {
+            JsonObject config = new JsonObject()
+                    .put("connection_string", connectionString)
+                    .put("db_name", options.database)
+                    .put("catalog.http.port", options.port)
+                    // no tracer, the load test measures the service alone
+                    .put("service-name", "");
+            System.out.println("Seeding " + options.products + " products");
+            LoadTest.<Void>await(f -> seed(vertx, config, options.products, f));
+            LoadTest.<String>await(f -> vertx.deployVerticle(new MainVerticle(),
+                    new DeploymentOptions().setConfig(config), f));
+
+            System.out.println("Running " + options.rate + " requests/s for " + options.warmup + "s of warmup and "
+                    + options.duration + "s of measurement, mix " + options.mix);
+            LoadGenerator generator = new LoadGenerator(options);
+            LoadTest.<String>await(f -> vertx.deployVerticle(generator, f));
+            LoadGenerator.Report report = generator.report().get();
+
+            report.print(System.out);
+            File output = new File(options.output);
+            output.mkdirs();
+            for (LoadGenerator.Operation operation : LoadGenerator.Operation.values()) {
+                try (PrintStream out = new PrintStream(new File(output, operation.file + ".hgrm"), "UTF-8")) {
+                    report.writeDistribution(operation, out);
+                }
+            }
+            System.out.println("Latency distributions written to " + output.getAbsolutePath());
+        } finally {
+            LoadTest.<Void>await(vertx::close);
+            if (mongo != null) {
+                mongo.stop();
+            }
+        }
+    }
+
+    private static void seed(Vertx vertx, JsonObject config, int products, Handler<AsyncResult<Void>> handler) {
+        MongoClient client = MongoClient.createNonShared(vertx, config);
+        seed(client, 0, products, ar -> {
+            client.close();
+            handler.handle(ar);
+        });
+    }
+
+    private static void seed(MongoClient client, int from, int products, Handler<AsyncResult<Void>> handler) {
+        if (from >= products) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        int to = Math.min(products, from + SEED_BATCH_SIZE);
+        List<BulkOperation> operations = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            JsonObject product = product(i, 10.0 + i % 100);
+            operations.add(BulkOperation.createReplace(new JsonObject().put("_id", product.getString("itemId")),
+                    product.copy().put("_id", product.getString("itemId")), true));
+        }
+        client.bulkWriteWithOptions("products", operations, new BulkWriteOptions().setOrdered(false), ar -> {
+            if (ar.succeeded()) {
+                seed(client, to, products, handler);
+            } else {
+                handler.handle(Future.failedFuture(ar.cause()));
+            }
+        });
+    }
+
+    static String itemId(int i) {
+        return String.format("%06d", i);
+    }
+
+    static JsonObject product(int i, double price) {
+        return new JsonObject()
+                .put("itemId", itemId(i))
+                .put("name", "Product name " + i)
+                .put("desc", "A description of product " + i + " long enough to be representative of the catalog")
+                .put("price", price);
+    }
+
+    private static <T> T await(Consumer<Handler<AsyncResult<T>>> operation) throws Exception {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        operation.accept(ar -> {
+            if (ar.succeeded()) {
+                future.complete(ar.result());
+            } else {
+                future.completeExceptionally(ar.cause());
+            }
+        });
+        return future.get();
+    }
+
+    /**
+     * Load test parameters, parsed from {@code name=value} arguments.
+     */
+    static class Options {
+
+        int products = 10000;
+
+        // requests per second, all operations included
+        int rate = 500;
+
+        // seconds
+        int warmup = 10;
+        int duration = 30;
+
+        // weights of GET /products, GET /product/:itemId and POST /product
+        String mix = "5:85:10";
+
+        int connections = 64;
+
+        // milliseconds
+        int timeout = 30000;
+
+        long seed = 42;
+
+        int port = 8080;
+
+        int mongoPort = 27019;
+
+        String connectionString;
+
+        String database = "catalogdb-loadtest";
+
+        String output = "target/loadtest";
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Expected name=value, got " + arg);
+                }
+                String name = arg.substring(0, separator);
+                String value = arg.substring(separator + 1);
+                switch (name) {
+                    case "products": options.products = Integer.parseInt(value); break;
+                    case "rate": options.rate = Integer.parseInt(value); break;
+                    case "warmup": options.warmup = Integer.parseInt(value); break;
+                    case "duration": options.duration = Integer.parseInt(value); break;
+                    case "mix": options.mix = value; break;
+                    case "connections": options.connections = Integer.parseInt(value); break;
+                    case "timeout": options.timeout = Integer.parseInt(value); break;
+                    case "seed": options.seed = Long.parseLong(value); break;
+                    case "port": options.port = Integer.parseInt(value); break;
+                    case "mongo-port": options.mongoPort = Integer.parseInt(value); break;
+                    case "connection_string": options.connectionString = value; break;
+                    case "db_name": options.database = value; break;
+                    case "output": options.output = value; break;
+                    default: throw new IllegalArgumentException("Unknown option " + name);
+                }
+            }
+            if (options.products <= 0 || options.rate <= 0 || options.duration <= 0 || options.warmup < 0) {
+                throw new IllegalArgumentException("products, rate and duration must be positive");
+            }
+            return options;
+        }
+
+        int[] weights() {
+            String[] parts = mix.split(":");
+            if (parts.length != LoadGenerator.Operation.values().length) {
+                throw new IllegalArgumentException("Expected " + LoadGenerator.Operation.values().length
+                        + " weights separated by ':', got " + mix);
+            }
+            int[] weights = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                weights[i] = Integer.parseInt(parts[i].trim());
+            }
+            return weights;
+        }
+    }
+
+}
@@ -1,16 +1,40 @@
 package com.redhat.coolstore.catalog.api;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
 import com.redhat.coolstore.catalog.model.Product;
+import com.redhat.coolstore.catalog.search.PriceIndex;
+import com.redhat.coolstore.catalog.search.ProductSearchIndex;
+import com.redhat.coolstore.catalog.verticle.service.CatalogHealth;
 import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+import com.redhat.coolstore.catalog.verticle.service.CatalogVersion;
+import com.redhat.coolstore.catalog.verticle.service.LocalCatalogServiceProxy;
+import com.redhat.coolstore.catalog.verticle.service.MeteredCatalogService;
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.contrib.vertx.ext.web.TracingHandler;
+import io.opentracing.noop.NoopSpan;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.healthchecks.HealthCheckHandler;
@@ -23,10 +47,59 @@ import io.vertx.core.logging.LoggerFactory;
 
 public class ApiVerticle extends AbstractVerticle {
 
+    public static final int DEFAULT_MAX_IDS = 500;
+
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    public static final long DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS = 100;
+
+    public static final int DEFAULT_SEARCH_LIMIT = 10;
+
+    public static final int DEFAULT_SEARCH_MAX_LIMIT = 100;
+
+    private static final List<String> PRODUCT_FIELDS = Arrays.asList("itemId", "name", "desc", "price");
+
+    public static final long DEFAULT_INDEX_RETRY_INTERVAL = 5000;
+
+    public static final int DEFAULT_CHANGES_MAX_LIMIT = 1000;
+
     private CatalogService catalogService;
 
     private Tracer tracer;
 
+    private ProductStreamer streamer;
+
+    private ProductExporter exporter;
+
+    private ResponseCache responseCache;
+
+    private int maxIds;
+
+    private CatalogMetrics metrics;
+
+    private int compressionThreshold;
+
+    private ProductSearchIndex searchIndex;
+
+    private PriceIndex priceIndex;
+
+    private boolean indexesLoaded;
+
+    private boolean handlerSpans;
+
+    private int searchMaxLimit;
+
+    private int changesMaxLimit;
+
+    private ChangeBroadcaster broadcaster;
+
+    private CatalogHealth catalogHealth;
+
+    // version and last modification time of the catalog, shared by the verticles of this Vert.x instance
+    private CatalogVersion catalogVersion;
+
     Logger log = LoggerFactory.getLogger(ApiVerticle.class);
 
     public ApiVerticle(CatalogService catalogService) {
@@ -37,24 +110,104 @@ public class ApiVerticle extends AbstractVerticle {
     public void start(Future<Void> startFuture) throws Exception {
 
         tracer = GlobalTracer.get();
+        handlerSpans = config().getBoolean("catalog.tracing.handler-spans", true);
+
+        metrics = CatalogMetrics.get(vertx);
+        String address = catalogService instanceof LocalCatalogServiceProxy
+                ? CatalogService.LOCAL_ADDRESS : CatalogService.ADDRESS;
+        catalogService = new MeteredCatalogService(catalogService, metrics.eventBusPending(address));
+
+        // pages are read through the catalog service, so through its connection pool and circuit breaker
+        if (config().getBoolean("catalog.http.streaming", false)) {
+            streamer = new ProductStreamer(catalogService,
+                    config().getInteger("catalog.http.stream-batch-size", ProductStreamer.DEFAULT_BATCH_SIZE));
+        }
+        if (config().getBoolean("catalog.export.enabled", true)) {
+            exporter = new ProductExporter(catalogService,
+                    config().getInteger("catalog.export.batch-size", ProductExporter.DEFAULT_BATCH_SIZE));
+        }
+
+        maxIds = config().getInteger("catalog.http.max-ids", DEFAULT_MAX_IDS);
+        changesMaxLimit = config().getInteger("catalog.changes.max-limit", DEFAULT_CHANGES_MAX_LIMIT);
+
+        responseCache = ResponseCache.create(config());
+        catalogHealth = CatalogHealth.get(vertx);
+        catalogVersion = CatalogVersion.get(vertx);
+        vertx.eventBus().<JsonObject>consumer(CatalogService.CHANGES_ADDRESS, m -> onProductChange(m.body()));
+
+        if (config().getBoolean("catalog.push.enabled", true)) {
+            broadcaster = new ChangeBroadcaster(catalogService,
+                    config().getInteger("catalog.push.max-subscribers", ChangeBroadcaster.DEFAULT_MAX_SUBSCRIBERS),
+                    config().getInteger("catalog.push.buffer-size", ChangeBroadcaster.DEFAULT_BUFFER_SIZE),
+                    config().getInteger("catalog.push.replay-limit", ChangeBroadcaster.DEFAULT_REPLAY_LIMIT),
+                    metrics);
+            vertx.setPeriodic(config().getLong("catalog.push.heartbeat-interval",
+                    ChangeBroadcaster.DEFAULT_HEARTBEAT_INTERVAL), l -> broadcaster.heartbeat());
+        }
+
+        if (config().getBoolean("catalog.search.enabled", false)) {
+            searchIndex = new ProductSearchIndex();
+            searchMaxLimit = config().getInteger("catalog.search.max-limit", DEFAULT_SEARCH_MAX_LIMIT);
+        }
+        if (config().getBoolean("catalog.price-index.enabled", false)) {
+            priceIndex = new PriceIndex();
+        }
+        if (searchIndex != null || priceIndex != null) {
+            loadIndexes();
+        }
 
         Router router = Router.router(vertx);
 
         TracingHandler handler = new TracingHandler(tracer);
         router.route().order(-1).handler(handler).failureHandler(handler);
-        router.get("/products").handler(this::getProducts);
-        router.get("/product/:itemId").handler(this::getProduct);
+        router.get("/products").handler(limited("GET /products", this::getProducts));
+        router.get("/products/search").handler(limited("GET /products/search", this::searchProducts));
+        router.get("/products/changes").handler(limited("GET /products/changes", this::getChanges));
+        // not timed nor limited, subscriptions last as long as the client stays connected
+        router.get("/products/stream").handler(this::subscribe);
+        // not timed nor limited either, exports last as long as the client takes to read the whole catalog
+        router.get("/products/export").handler(this::exportProducts);
+        router.get("/product/:itemId").handler(limited("GET /product/:itemId", this::getProduct));
         router.route("/product").handler(BodyHandler.create());
-        router.post("/product").handler(this::addProduct);
+        router.post("/product").handler(limited("POST /product", this::addProduct));
+        router.route("/products/ids").handler(BodyHandler.create());
+        router.post("/products/ids").handler(limited("POST /products/ids", this::getProductsByIds));
+        ProductBatchHandler batchHandler = new ProductBatchHandler(catalogService,
+                config().getInteger("catalog.bulk.batch-size", ProductBatchHandler.DEFAULT_BATCH_SIZE),
+                config().getLong("catalog.bulk.max-body-size", ProductBatchHandler.DEFAULT_MAX_BODY_SIZE));
+        router.post("/products/batch").handler(limited("POST /products/batch", batchHandler));
 
-        //Health Checks
-        router.get("/health/readiness").handler(rc -> rc.response().end("OK"));
+        //Metrics
+        router.get("/metrics").handler(rc -> rc.response()
+                .putHeader("Content-type", "text/plain; version=0.0.4")
+                .end(metrics.scrape()));
+
+        //Health Checks, never limited: a shedding instance is still alive
+        // liveness only tells that the process answers, a MongoDB failover must not get the pods restarted, and
+        // readiness stays up as long as reads can be answered, from the last known products if need be
+        router.get("/health/liveness").handler(rc -> rc.response().end("OK"));
         HealthCheckHandler healthCheckHandler = HealthCheckHandler.create(vertx)
                 .register("health", f -> health(f));
-        router.get("/health/liveness").handler(healthCheckHandler);
+        router.get("/health/readiness").handler(healthCheckHandler);
+
+        HttpServerOptions serverOptions = httpServerOptions(config());
+        compressionThreshold = serverOptions.isCompressionSupported()
+                ? config().getInteger("catalog.http.compression-threshold", DEFAULT_COMPRESSION_THRESHOLD) : 0;
 
-        vertx.createHttpServer()
+        LongAdder connections = metrics.httpConnections();
+        vertx.createHttpServer(serverOptions)
+            .connectionHandler(connection -> {
+                connections.increment();
+                connection.closeHandler(v -> connections.decrement());
+            })
             .requestHandler(router::accept)
+            .websocketHandler(webSocket -> {
+                if (broadcaster != null && webSocket.path().equals("/products/ws")) {
+                    broadcaster.subscribe(webSocket);
+                } else {
+                    webSocket.reject();
+                }
+            })
             .listen(config().getInteger("catalog.http.port", 8080), result -> {
                 if (result.succeeded()) {
                     startFuture.complete();
@@ -64,16 +217,80 @@ public class ApiVerticle extends AbstractVerticle {
             });
     }
 
+    /**
+     * Wraps a route handler with the metrics of the route, and with its concurrency limiter when admission control
+     * is enabled. The time spent waiting for the limiter is part of the route latency.
+     */
+    private Handler<RoutingContext> limited(String route, Handler<RoutingContext> handler) {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.create(vertx, config(), route, metrics);
+        return metrics.timed(route, limiter != null ? limiter.limit(handler) : handler);
+    }
+
     private void getProducts(RoutingContext rc) {
 
+        List<String> fields = fields(rc);
+        if (fields != null && !PRODUCT_FIELDS.containsAll(fields)) {
+            rc.response().setStatusCode(400).end("Unknown fields, expected some of " + PRODUCT_FIELDS);
+            return;
+        }
 
-        Span span = tracer.buildSpan("getProducts")
-                .asChildOf(TracingHandler.serverSpanContext(rc))
-                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
-                .startManual();
+        String ids = rc.request().getParam("ids");
+        if (ids != null) {
+            getProductsByIds(rc, Arrays.stream(ids.split(","))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .collect(Collectors.toList()));
+            return;
+        }
+
+        if (rc.request().params().contains("minPrice") || rc.request().params().contains("maxPrice")
+                || rc.request().params().contains("sort") || rc.request().params().contains("limit")) {
+            getProductsByPrice(rc);
+            return;
+        }
 
-        log.info("getProducts() started span ...");
+        Span span = startSpan(rc, "getProducts");
 
+        if (log.isDebugEnabled()) {
+            log.debug("getProducts() started span");
+        }
+
+        if (fields != null) {
+            // trimmed products are neither streamed nor cached
+            catalogService.getProductsWithFields(fields, ar -> {
+                span.finish();
+                if (ar.succeeded()) {
+                    JsonArray json = new JsonArray(ar.result());
+                    sendJson(rc, new ResponseCache.Entry(Buffer.buffer(json.encode()), false));
+                } else {
+                    rc.fail(ar.cause());
+                }
+            });
+            return;
+        }
+
+        if (streamer != null) {
+            streamer.stream(rc.response(), ar -> {
+                span.finish();
+                if (ar.failed()) {
+                    if (rc.response().headWritten()) {
+                        log.warn("getProducts() streaming failed: " + ar.cause().getMessage());
+                    } else {
+                        rc.fail(ar.cause());
+                    }
+                }
+            });
+            return;
+        }
+
+        ResponseCache.Entry cached = responseCache != null ? responseCache.getProducts() : null;
+        if (cached != null) {
+            span.finish();
+            sendJson(rc, cached);
+            return;
+        }
+
+        long generation = responseCache != null ? responseCache.generation() : 0;
         catalogService.getProducts(ar -> {
             span.finish();
             if (ar.succeeded()) {
@@ -82,35 +299,333 @@ public class ApiVerticle extends AbstractVerticle {
                 products.stream()
                         .map(p -> p.toJson())
                         .forEach(p -> json.add(p));
+                Buffer body = Buffer.buffer(json.encode());
+                if (responseCache != null && !catalogHealth.servingStale()) {
+                    sendJson(rc, responseCache.putProducts(body, generation));
+                } else {
+                    sendJson(rc, new ResponseCache.Entry(body, false));
+                }
+            } else {
+                rc.fail(ar.cause());
+            }
+        });
+    }
+
+    private void getProductsByIds(RoutingContext rc) {
+        List<String> fields = fields(rc);
+        if (fields != null && !PRODUCT_FIELDS.containsAll(fields)) {
+            rc.response().setStatusCode(400).end("Unknown fields, expected some of " + PRODUCT_FIELDS);
+            return;
+        }
+
+        JsonArray ids;
+        try {
+            ids = rc.getBodyAsJsonArray();
+        } catch (DecodeException e) {
+            rc.fail(400);
+            return;
+        }
+        if (ids == null) {
+            rc.fail(400);
+            return;
+        }
+        List<String> itemIds = new ArrayList<>();
+        for (Object id : ids) {
+            if (!(id instanceof String)) {
+                rc.fail(400);
+                return;
+            }
+            itemIds.add((String) id);
+        }
+        getProductsByIds(rc, itemIds);
+    }
+
+    private void getProductsByIds(RoutingContext rc, List<String> itemIds) {
+        if (itemIds.size() > maxIds) {
+            rc.response().setStatusCode(400).end("Too many ids, the maximum is " + maxIds);
+            return;
+        }
+
+        Span span = startSpan(rc, "getProductsByIds");
+
+        if (log.isDebugEnabled()) {
+            log.debug("getProductsByIds() started span. ids = " + itemIds.size());
+        }
+
+        List<String> fields = fields(rc);
+        catalogService.getProductsByIds(itemIds, ar -> {
+            span.finish();
+            if (ar.succeeded()) {
+                JsonArray json = new JsonArray();
+                ar.result().forEach(p -> json.add(toJson(p, fields)));
+                sendJson(rc, new ResponseCache.Entry(Buffer.buffer(json.encode()), false));
+            } else {
+                rc.fail(ar.cause());
+            }
+        });
+    }
+
+    private void searchProducts(RoutingContext rc) {
+        if (searchIndex == null) {
+            rc.fail(404);
+            return;
+        }
+        if (!indexesLoaded) {
+            rc.response().setStatusCode(503).end("Search index not loaded yet");
+            return;
+        }
+        String query = rc.request().getParam("q");
+        if (query == null) {
+            rc.response().setStatusCode(400).end("Missing q parameter");
+            return;
+        }
+        int limit;
+        try {
+            String limitParam = rc.request().getParam("limit");
+            limit = limitParam != null ? Integer.parseInt(limitParam) : DEFAULT_SEARCH_LIMIT;
+        } catch (NumberFormatException e) {
+            rc.response().setStatusCode(400).end("Invalid limit parameter");
+            return;
+        }
+
+        sendProducts(rc, searchIndex.search(query, Math.min(limit, searchMaxLimit)));
+    }
+
+    /**
+     * Handles {@code GET /products?minPrice=&maxPrice=&sort=price&limit=}. The query is answered from the price
+     * index once it is loaded, and by filtering the whole catalog otherwise.
+     */
+    private void getProductsByPrice(RoutingContext rc) {
+        double minPrice;
+        double maxPrice;
+        int limit;
+        try {
+            minPrice = doubleParam(rc, "minPrice", Double.NEGATIVE_INFINITY);
+            maxPrice = doubleParam(rc, "maxPrice", Double.POSITIVE_INFINITY);
+            String limitParam = rc.request().getParam("limit");
+            limit = limitParam != null ? Integer.parseInt(limitParam) : Integer.MAX_VALUE;
+        } catch (NumberFormatException e) {
+            rc.response().setStatusCode(400).end("Invalid price or limit parameter");
+            return;
+        }
+        if (limit < 0) {
+            rc.response().setStatusCode(400).end("Invalid limit parameter");
+            return;
+        }
+        String sort = rc.request().getParam("sort");
+        if (sort != null && !sort.equals("price") && !sort.equals("-price")) {
+            rc.response().setStatusCode(400).end("Unsupported sort parameter, use price or -price");
+            return;
+        }
+        boolean descending = "-price".equals(sort);
+
+        if (priceIndex != null && indexesLoaded) {
+            sendProducts(rc, priceIndex.range(minPrice, maxPrice, limit, descending));
+            return;
+        }
+
+        catalogService.getProducts(ar -> {
+            if (ar.succeeded()) {
+                Comparator<Product> byPrice = Comparator.comparingDouble(Product::getPrice);
+                sendProducts(rc, ar.result().stream()
+                        .filter(p -> p.getPrice() >= minPrice && p.getPrice() <= maxPrice)
+                        .sorted(descending ? byPrice.reversed() : byPrice)
+                        .limit(limit)
+                        .collect(Collectors.toList()));
+            } else {
+                rc.fail(ar.cause());
+            }
+        });
+    }
+
+    private double doubleParam(RoutingContext rc, String name, double defaultValue) {
+        String value = rc.request().getParam(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        double parsed = Double.parseDouble(value);
+        if (Double.isNaN(parsed)) {
+            throw new NumberFormatException("NaN");
+        }
+        return parsed;
+    }
+
+    private void sendProducts(RoutingContext rc, List<Product> products) {
+        List<String> fields = fields(rc);
+        JsonArray json = new JsonArray();
+        products.forEach(p -> json.add(toJson(p, fields)));
+        sendJson(rc, Buffer.buffer(json.encode()));
+    }
+
+    /**
+     * Returns the product fields asked with the {@code fields} parameter, a comma separated list, or null when all
+     * the fields are asked.
+     */
+    private List<String> fields(RoutingContext rc) {
+        String fields = rc.request().getParam("fields");
+        if (fields == null) {
+            return null;
+        }
+        List<String> list = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toList());
+        return list.isEmpty() ? null : list;
+    }
+
+    private JsonObject toJson(Product product, List<String> fields) {
+        return fields != null ? product.toJson(fields) : product.toJson();
+    }
+
+    /**
+     * Loads the search and price indexes from the catalog service. Products changed while the catalog is loading
+     * are already in the indexes, and are not overwritten by the loaded ones.
+     */
+    private void loadIndexes() {
+        catalogService.getProducts(ar -> {
+            if (ar.succeeded()) {
+                if (searchIndex != null) {
+                    searchIndex.load(ar.result());
+                    log.info("Search index loaded: " + searchIndex.size() + " products, "
+                            + searchIndex.terms() + " terms");
+                }
+                if (priceIndex != null) {
+                    priceIndex.load(ar.result());
+                    log.info("Price index loaded: " + priceIndex.size() + " products");
+                }
+                indexesLoaded = true;
+            } else {
+                log.warn("Product indexes load failed, retrying: " + ar.cause().getMessage());
+                vertx.setTimer(config().getLong("catalog.index.retry-interval", DEFAULT_INDEX_RETRY_INTERVAL),
+                        l -> loadIndexes());
+            }
+        });
+    }
+
+    /**
+     * Handles {@code GET /products/changes?since=&limit=}. Clients mirroring the catalog load it once with
+     * {@code GET /products}, and then poll for the changes since the version returned in the
+     * {@code X-Catalog-Version} header, and then since the version returned with each batch of changes. A
+     * {@code 410 Gone} response means the changes are not available anymore, and the catalog must be reloaded.
+     */
+    private void getChanges(RoutingContext rc) {
+        long since;
+        int limit;
+        try {
+            since = Long.parseLong(rc.request().getParam("since"));
+            String limitParam = rc.request().getParam("limit");
+            limit = limitParam != null ? Math.min(Integer.parseInt(limitParam), changesMaxLimit) : changesMaxLimit;
+        } catch (NumberFormatException e) {
+            rc.response().setStatusCode(400).end("Missing or invalid since or limit parameter");
+            return;
+        }
+        if (since < 0 || limit <= 0) {
+            rc.response().setStatusCode(400).end("Invalid since or limit parameter");
+            return;
+        }
+        catalogService.getChanges(since, limit, ar -> {
+            if (ar.succeeded()) {
+                JsonObject result = ar.result();
                 rc.response()
-                        .putHeader("Content-type", "application/json")
-                        .end(json.encodePrettily());
+                        .setStatusCode(result.getBoolean("resync", false) ? 410 : 200)
+                        .putHeader("X-Catalog-Version", String.valueOf(result.getLong("version")));
+                sendJson(rc, Buffer.buffer(result.encode()));
             } else {
                 rc.fail(ar.cause());
             }
         });
     }
 
+    /**
+     * Handles {@code GET /products/export?format=ndjson|csv}, the whole catalog read straight from the database,
+     * gzip compressed when the client accepts it.
+     */
+    private void exportProducts(RoutingContext rc) {
+        if (exporter == null) {
+            rc.fail(404);
+            return;
+        }
+        String formatParam = rc.request().getParam("format");
+        ProductExporter.Format format = formatParam == null
+                ? ProductExporter.Format.NDJSON : ProductExporter.Format.of(formatParam);
+        if (format == null) {
+            rc.response().setStatusCode(400).end("Unknown format " + formatParam + ", expected ndjson or csv");
+            return;
+        }
+
+        Span span = startSpan(rc, "exportProducts");
+        exporter.export(rc.response(), format, acceptsGzip(rc), ar -> {
+            span.finish();
+            if (ar.failed()) {
+                if (rc.response().headWritten()) {
+                    log.warn("exportProducts() failed: " + ar.cause().getMessage());
+                } else {
+                    rc.fail(ar.cause());
+                }
+            }
+        });
+    }
+
+    /**
+     * Handles {@code GET /products/stream}, a Server-Sent Events stream of the product changes, starting with the
+     * changes after the {@code Last-Event-ID} of a reconnecting client.
+     */
+    private void subscribe(RoutingContext rc) {
+        if (broadcaster == null) {
+            rc.fail(404);
+        } else if (!broadcaster.subscribe(rc.response(), rc.request().getHeader("Last-Event-ID"))) {
+            rc.response().setStatusCode(503).end("Too many subscribers");
+        }
+    }
+
     private void getProduct(RoutingContext rc) {
-        Span span = tracer.buildSpan("getProduct")
-                .asChildOf(TracingHandler.serverSpanContext(rc))
-                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
-                .startManual();
+        List<String> fields = fields(rc);
+        if (fields != null && !PRODUCT_FIELDS.containsAll(fields)) {
+            rc.response().setStatusCode(400).end("Unknown fields, expected some of " + PRODUCT_FIELDS);
+            return;
+        }
+
+        Span span = startSpan(rc, "getProduct");
 
         String itemId = rc.request().getParam("itemid");
 
-        log.info("getProducts() started span. itemId = "+itemId);
+        if (log.isDebugEnabled()) {
+            log.debug("getProduct() started span. itemId = " + itemId);
+        }
 
+        if (fields != null) {
+            catalogService.getProductWithFields(itemId, fields, ar -> {
+                span.finish();
+                if (ar.failed()) {
+                    rc.fail(ar.cause());
+                } else if (ar.result() == null) {
+                    rc.fail(404);
+                } else {
+                    sendJson(rc, new ResponseCache.Entry(Buffer.buffer(ar.result().encode()), false));
+                }
+            });
+            return;
+        }
+
+        ResponseCache.Entry cached = responseCache != null ? responseCache.getProduct(itemId) : null;
+        if (cached != null) {
+            span.finish();
+            sendJson(rc, cached);
+            return;
+        }
+
+        long generation = responseCache != null ? responseCache.generation() : 0;
         catalogService.getProduct(itemId, ar -> {
             span.finish();
             if (ar.succeeded()) {
                 Product product = ar.result();
-                JsonObject json;
                 if (product != null) {
-                    json = product.toJson();
-                    rc.response()
-                            .putHeader("Content-type", "application/json")
-                            .end(json.encodePrettily());
+                    Buffer body = Buffer.buffer(product.toJson().encode());
+                    if (responseCache != null && !catalogHealth.servingStale()) {
+                        sendJson(rc, responseCache.putProduct(itemId, body, generation));
+                    } else {
+                        sendJson(rc, new ResponseCache.Entry(body, false));
+                    }
                 } else {
                     rc.fail(404);
                 }
@@ -121,17 +636,22 @@ public class ApiVerticle extends AbstractVerticle {
     }
 
     private void addProduct(RoutingContext rc) {
-        Span span = tracer.buildSpan("addProduct")
-                .asChildOf(TracingHandler.serverSpanContext(rc))
-                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
-                .startManual();
+        Span span = startSpan(rc, "addProduct");
 
-        log.info("addProduct() started span.");
+        if (log.isDebugEnabled()) {
+            log.debug("addProduct() started span");
+        }
 
         JsonObject json = rc.getBodyAsJson();
-        catalogService.addProduct(new Product(json), ar -> {
+        Product product = new Product(json);
+        catalogService.addProduct(product, ar -> {
             span.finish();
+            if (responseCache != null) {
+                responseCache.invalidate(product.getItemId());
+            }
             if (ar.succeeded()) {
+                // the change event may not have reached the catalog service yet
+                catalogVersion.advance(catalogVersion.current(), System.currentTimeMillis());
                 rc.response().setStatusCode(201).end();
             } else {
                 rc.fail(ar.cause());
@@ -139,16 +659,171 @@ public class ApiVerticle extends AbstractVerticle {
         });
     }
 
+    /**
+     * Starts the span of a route handler, as a child of the server span of the request. A no-op span is returned when
+     * handler spans are disabled, or when the request is not sampled, as its span would not be reported anyway.
+     */
+    private Span startSpan(RoutingContext rc, String operationName) {
+        if (!handlerSpans) {
+            return NoopSpan.INSTANCE;
+        }
+        SpanContext parent = TracingHandler.serverSpanContext(rc);
+        if (parent instanceof io.jaegertracing.SpanContext && !((io.jaegertracing.SpanContext) parent).isSampled()) {
+            return NoopSpan.INSTANCE;
+        }
+        return tracer.buildSpan(operationName)
+                .asChildOf(parent)
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+                .startManual();
+    }
+
+    private void sendJson(RoutingContext rc, ResponseCache.Entry entry) {
+        long lastModified = catalogVersion.lastModified();
+        boolean compressed = entry.body().length() >= compressionThreshold && compressionThreshold > 0;
+        Buffer gzipped = acceptsGzip(rc) ? entry.gzipped() : null;
+        // a strong entity tag identifies the bytes sent, so each encoding has its own; the ones compressed by the
+        // server on the fly are only known to be equivalent
+        String etag = gzipped != null ? entry.gzipEtag() : compressed ? "W/" + entry.etag() : entry.etag();
+        rc.response()
+                .putHeader("ETag", etag)
+                .putHeader("Last-Modified", httpDate(lastModified))
+                .putHeader("X-Catalog-Version", String.valueOf(catalogVersion.current()));
+        if (compressed || (responseCache != null && responseCache.gzip())) {
+            // the body depends on Accept-Encoding, shared caches must not serve the gzip body to other clients
+            rc.response().putHeader("Vary", "Accept-Encoding");
+        }
+        if (notModified(rc, etag, lastModified)) {
+            rc.response().setStatusCode(304).end();
+            return;
+        }
+        if (gzipped != null) {
+            staleWarning(rc);
+            rc.response()
+                    .putHeader("Content-Encoding", "gzip")
+                    .putHeader("Content-type", "application/json")
+                    .end(gzipped);
+        } else {
+            sendJson(rc, entry.body());
+        }
+    }
+
+    private void sendJson(RoutingContext rc, Buffer body) {
+        staleWarning(rc);
+        if (body.length() < compressionThreshold) {
+            // small bodies are not worth the compression overhead
+            rc.response().putHeader("Content-Encoding", "identity");
+        }
+        rc.response()
+                .putHeader("Content-type", "application/json")
+                .end(body);
+    }
+
+    private void staleWarning(RoutingContext rc) {
+        if (catalogHealth.servingStale()) {
+            // the catalog service answers from the last known products while MongoDB is unavailable
+            rc.response().putHeader("Warning", "110 - \"Response is Stale\"");
+        }
+    }
+
+    static HttpServerOptions httpServerOptions(JsonObject config) {
+        HttpServerOptions options = new HttpServerOptions()
+                .setCompressionSupported(config.getBoolean("catalog.http.compression", false))
+                .setCompressionLevel(config.getInteger("catalog.http.compression-level", DEFAULT_COMPRESSION_LEVEL))
+                .setTcpNoDelay(config.getBoolean("catalog.http.tcp-no-delay", HttpServerOptions.DEFAULT_TCP_NO_DELAY))
+                .setTcpKeepAlive(config.getBoolean("catalog.http.tcp-keep-alive", HttpServerOptions.DEFAULT_TCP_KEEP_ALIVE))
+                .setReuseAddress(config.getBoolean("catalog.http.reuse-address", HttpServerOptions.DEFAULT_REUSE_ADDRESS))
+                .setAcceptBacklog(config.getInteger("catalog.http.accept-backlog", HttpServerOptions.DEFAULT_ACCEPT_BACKLOG))
+                .setIdleTimeout(config.getInteger("catalog.http.idle-timeout", HttpServerOptions.DEFAULT_IDLE_TIMEOUT));
+        // HTTP/2 over clear text (h2c) is accepted by the server, either by upgrade or with prior knowledge
+        options.setInitialSettings(new Http2Settings()
+                .setMaxConcurrentStreams(config.getLong("catalog.http.http2.max-concurrent-streams",
+                        DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS)));
+        return options;
+    }
+
+    /**
+     * Evaluates the conditional request headers. If-None-Match takes precedence over If-Modified-Since, as the
+     * entity tag is computed from the response body while the modification time is the one of the whole catalog.
+     */
+    private boolean notModified(RoutingContext rc, String etag, long lastModified) {
+        String ifNoneMatch = rc.request().getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return etagMatches(ifNoneMatch, etag);
+        }
+        String ifModifiedSince = rc.request().getHeader("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant().toEpochMilli();
+                // HTTP dates have a precision of one second
+                return lastModified / 1000 <= since / 1000;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (etag.startsWith("W/")) {
+            etag = etag.substring(2);
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            // If-None-Match uses the weak comparison
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC));
+    }
+
+    private boolean acceptsGzip(RoutingContext rc) {
+        String acceptEncoding = rc.request().getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private void onProductChange(JsonObject change) {
+        JsonObject product = change.getJsonObject("product");
+        if (broadcaster != null) {
+            broadcaster.publish(change);
+        }
+        if (responseCache != null) {
+            responseCache.invalidate(product.getString("itemId"));
+        }
+        if (searchIndex != null || priceIndex != null) {
+            Product changed = new Product(product);
+            if (searchIndex != null) {
+                searchIndex.put(changed);
+            }
+            if (priceIndex != null) {
+                priceIndex.put(changed);
+            }
+        }
+    }
+
     private void health(Future<Status> future) {
         catalogService.ping(ar -> {
             if (ar.succeeded()) {
                 // HealthCheckHandler has a timeout of 1000s. If timeout is exceeded, the future will be failed
                 if (!future.isComplete()) {
-                    future.complete(Status.OK());
+                    future.complete(Status.OK(new JsonObject()
+                            .put("mongo", ar.result())
+                            .put("stale", catalogHealth.servingStale())));
                 }
             } else {
                 if (!future.isComplete()) {
-                    future.complete(Status.KO());
+                    future.complete(Status.KO(new JsonObject().put("error", ar.cause().getMessage())));
                 }
             }
         });
@@ -0,0 +1,316 @@
+package com.redhat.coolstore.catalog.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.WriteStream;
+
+/**
+ * Pushes the product change events to the clients subscribed with Server-Sent Events or a WebSocket.
+ * <p/>
+ * Each change is encoded once, and written to every subscriber. The write queue of each subscriber is bounded by
+ * {@code bufferSize} bytes: a subscriber whose queue is still full when the next change or heartbeat comes is too
+ * slow to keep up, and is disconnected rather than buffered for, so that one slow client can not hold on to the
+ * memory of the whole server. Disconnected clients can catch up with {@code GET /products/changes}.
+ * <p/>
+ * Server-Sent Events carry the catalog version as event id, and the change as data. WebSocket text messages carry
+ * the change; heartbeats are empty JSON objects.
+ * <p/>
+ * A Server-Sent Events client reconnecting with a {@code Last-Event-ID} is first sent the changes it missed, read
+ * from the catalog service, and then the live ones. When the missed changes can not be read, or there are more than
+ * {@code replayLimit} of them, it is sent a {@code resync} event with the current catalog version instead, and has
+ * to reload the whole catalog. Live changes published during the replay are held back until it is done.
+ * <p/>
+ * Only the changes published on the event bus of this Vert.x instance are pushed: the writes handled by the other
+ * instances of the service, behind the same load balancer, are not. Clients which must see every change poll
+ * {@code GET /products/changes}, which reads them from the database.
+ * <p/>
+ * The maximum number of subscribers is per instance, so per ApiVerticle: a Vert.x instance accepts up to
+ * {@code catalog.api.instances} (the number of cores by default) times {@code maxSubscribers} subscribers.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the owning verticle.
+ */
+public class ChangeBroadcaster {
+
+    public static final int DEFAULT_MAX_SUBSCRIBERS = 10000;
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    public static final long DEFAULT_HEARTBEAT_INTERVAL = 15000;
+
+    public static final int DEFAULT_REPLAY_LIMIT = 1000;
+
+    private static final Buffer SSE_HEARTBEAT = Buffer.buffer(":\n\n");
+
+    private static final String WEBSOCKET_HEARTBEAT = "{}";
+
+    private final CatalogService catalogService;
+
+    private final int maxSubscribers;
+
+    private final int bufferSize;
+
+    private final int replayLimit;
+
+    private final Set<Subscriber> subscribers = new LinkedHashSet<>();
+
+    private final LongAdder sseSubscribers;
+
+    private final LongAdder webSocketSubscribers;
+
+    private final LongAdder slowDisconnects;
+
+    public ChangeBroadcaster(CatalogService catalogService, int maxSubscribers, int bufferSize, int replayLimit,
+            CatalogMetrics metrics) {
+        this.catalogService = catalogService;
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+        this.replayLimit = replayLimit;
+        String help = "Clients subscribed to the product changes by transport";
+        this.sseSubscribers = metrics.gauge("catalog_push_subscribers", help, CatalogMetrics.label("transport", "sse"));
+        this.webSocketSubscribers = metrics.gauge("catalog_push_subscribers", help,
+                CatalogMetrics.label("transport", "websocket"));
+        this.slowDisconnects = metrics.counter("catalog_push_slow_consumer_disconnects_total",
+                "Subscribers disconnected because they did not keep up with the product changes", "");
+    }
+
+    /**
+     * Subscribes the client of an HTTP request with Server-Sent Events, replaying the changes after the given
+     * {@code Last-Event-ID} when not null. Returns false when the maximum number of subscribers is reached.
+     */
+    public boolean subscribe(HttpServerResponse response, String lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            return false;
+        }
+        response.setChunked(true)
+                .setWriteQueueMaxSize(bufferSize)
+                .putHeader("Content-type", "text/event-stream")
+                .putHeader("Cache-Control", "no-cache")
+                // compression would hold the events back until enough of them are buffered
+                .putHeader("Content-Encoding", "identity")
+                .write(SSE_HEARTBEAT);
+        Subscriber subscriber = new Subscriber(response, sseSubscribers) {
+            @Override
+            void send(Buffer sse, String json) {
+                response.write(sse);
+            }
+
+            @Override
+            void heartbeat() {
+                response.write(SSE_HEARTBEAT);
+            }
+
+            @Override
+            void close() {
+                response.close();
+            }
+        };
+        response.closeHandler(v -> subscriber.unsubscribe());
+        subscriber.subscribe();
+        if (lastEventId != null) {
+            replay(subscriber, response, lastEventId);
+        }
+        return true;
+    }
+
+    /**
+     * Subscribes the client of a WebSocket. The WebSocket is rejected when the maximum number of subscribers is
+     * reached.
+     */
+    public void subscribe(ServerWebSocket webSocket) {
+        if (subscribers.size() >= maxSubscribers) {
+            webSocket.reject();
+            return;
+        }
+        webSocket.setWriteQueueMaxSize(bufferSize);
+        Subscriber subscriber = new Subscriber(webSocket, webSocketSubscribers) {
+            @Override
+            void send(Buffer sse, String json) {
+                webSocket.writeTextMessage(json);
+            }
+
+            @Override
+            void heartbeat() {
+                webSocket.writeTextMessage(WEBSOCKET_HEARTBEAT);
+            }
+
+            @Override
+            void close() {
+                webSocket.close();
+            }
+        };
+        webSocket.closeHandler(v -> subscriber.unsubscribe());
+        // subscribers only listen, messages sent by the client are ignored
+        webSocket.handler(buffer -> { });
+        subscriber.subscribe();
+    }
+
+    public void publish(JsonObject change) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        long version = change.getLong("version", 0L);
+        String json = change.encode();
+        Buffer sse = sse(version, json);
+        // subscribers may be removed while iterating
+        for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+            if (subscriber.replaying) {
+                subscriber.hold(version, sse);
+            } else if (subscriber.keepsUp()) {
+                subscriber.send(sse, json);
+            }
+        }
+    }
+
+    private void replay(Subscriber subscriber, HttpServerResponse response, String lastEventId) {
+        long since;
+        try {
+            since = Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            response.write(resync(0L));
+            return;
+        }
+        subscriber.replaying = true;
+        subscriber.held = new ArrayList<>();
+        catalogService.getChanges(since, replayLimit, ar -> {
+            subscriber.replaying = false;
+            List<Held> held = subscriber.held;
+            subscriber.held = null;
+            if (!subscriber.subscribed) {
+                return;
+            }
+            long replayed = since;
+            if (ar.failed() || ar.result().getBoolean("resync", false) || ar.result().getBoolean("more", false)
+                    || subscriber.overflow) {
+                // the client reloads the catalog, which holds the changes held back so far
+                response.write(resync(ar.succeeded() ? ar.result().getLong("version", 0L) : 0L));
+            } else {
+                JsonArray changes = ar.result().getJsonArray("changes");
+                for (int i = 0; i < changes.size(); i++) {
+                    JsonObject change = changes.getJsonObject(i);
+                    replayed = change.getLong("version", 0L);
+                    response.write(sse(replayed, change.encode()));
+                }
+                for (Held change : held) {
+                    // changes published during the replay may also have been read from the catalog service
+                    if (change.version > replayed) {
+                        response.write(change.sse);
+                    }
+                }
+            }
+        });
+    }
+
+    private static Buffer sse(long version, String json) {
+        return Buffer.buffer(json.length() + 64)
+                .appendString("id: ").appendString(String.valueOf(version))
+                .appendString("\nevent: product\ndata: ").appendString(json)
+                .appendString("\n\n");
+    }
+
+    private static Buffer resync(long version) {
+        return Buffer.buffer("event: resync\ndata: " + new JsonObject().put("version", version).encode() + "\n\n");
+    }
+
+    public void heartbeat() {
+        for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+            if (subscriber.keepsUp()) {
+                subscriber.heartbeat();
+            }
+        }
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    private abstract class Subscriber {
+
+        private final WriteStream<Buffer> stream;
+
+        private final LongAdder gauge;
+
+        private boolean subscribed;
+
+        private boolean replaying;
+
+        // live changes held back while the missed ones are replayed, up to replayLimit of them
+        private List<Held> held;
+
+        private boolean overflow;
+
+        private Subscriber(WriteStream<Buffer> stream, LongAdder gauge) {
+            this.stream = stream;
+            this.gauge = gauge;
+        }
+
+        abstract void send(Buffer sse, String json);
+
+        abstract void heartbeat();
+
+        abstract void close();
+
+        private void subscribe() {
+            subscribed = true;
+            subscribers.add(this);
+            gauge.increment();
+        }
+
+        private void unsubscribe() {
+            if (subscribed) {
+                subscribed = false;
+                subscribers.remove(this);
+                gauge.decrement();
+            }
+        }
+
+        private void hold(long version, Buffer sse) {
+            if (overflow) {
+                return;
+            }
+            if (held.size() < replayLimit) {
+                held.add(new Held(version, sse));
+            } else {
+                overflow = true;
+                held.clear();
+            }
+        }
+
+        /**
+         * Returns true when the subscriber can take one more message, disconnects it otherwise.
+         */
+        private boolean keepsUp() {
+            if (!stream.writeQueueFull()) {
+                return true;
+            }
+            slowDisconnects.increment();
+            unsubscribe();
+            close();
+            return false;
+        }
+    }
+
+    private static class Held {
+
+        private final long version;
+
+        private final Buffer sse;
+
+        private Held(long version, Buffer sse) {
+            this.version = version;
+            this.sse = sse;
+        }
+    }
+
+}
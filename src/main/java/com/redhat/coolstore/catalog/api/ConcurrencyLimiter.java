@@ -0,0 +1,261 @@
+package com.redhat.coolstore.catalog.api;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Adaptive limit of the requests of a route processed concurrently, with a bounded queue for the requests over the
+ * limit.
+ * <p/>
+ * The limit is adjusted with AIMD: it grows by one each time a limit's worth of requests complete under the latency
+ * threshold while the limit is in use, and is multiplied by the backoff ratio when a request is slower than the
+ * threshold or fails with a server error. A burst of slow requests is one signal: the limit is cut at most once per
+ * threshold period.
+ * <p/>
+ * Requests over the limit wait in a queue of at most {@code maxQueueSize} requests, for at most
+ * {@code queueTimeout} milliseconds. The other ones are rejected straight away with a {@code 503} and a
+ * {@code Retry-After} header: a slow database then costs some requests failing fast, instead of all the requests
+ * piling up until they time out.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the owning verticle.
+ */
+public class ConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+    public static final int DEFAULT_MIN_LIMIT = 1;
+
+    public static final int DEFAULT_MAX_LIMIT = 200;
+
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 50;
+
+    public static final long DEFAULT_QUEUE_TIMEOUT = 1000;
+
+    public static final long DEFAULT_LATENCY_THRESHOLD = 500;
+
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+    public static final int DEFAULT_RETRY_AFTER = 1;
+
+    private final Vertx vertx;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int maxQueueSize;
+
+    private final long queueTimeout;
+
+    private final long latencyThreshold;
+
+    private final double backoffRatio;
+
+    private final String retryAfter;
+
+    private final ArrayDeque<Waiting> queue = new ArrayDeque<>();
+
+    private double limit;
+
+    private int inFlight;
+
+    private long lastDecrease;
+
+    private long timer = -1;
+
+    private final LongAdder limitGauge;
+
+    private int publishedLimit;
+
+    private final LongAdder queuedGauge;
+
+    private final LongAdder shedLimit;
+
+    private final LongAdder shedQueueTimeout;
+
+    ConcurrencyLimiter(Vertx vertx, String route, int initialLimit, int minLimit, int maxLimit, int maxQueueSize,
+            long queueTimeout, long latencyThreshold, double backoffRatio, int retryAfter, CatalogMetrics metrics) {
+        this.vertx = vertx;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueueSize = maxQueueSize;
+        this.queueTimeout = TimeUnit.MILLISECONDS.toNanos(queueTimeout);
+        this.latencyThreshold = TimeUnit.MILLISECONDS.toNanos(latencyThreshold);
+        this.backoffRatio = backoffRatio;
+        this.retryAfter = String.valueOf(retryAfter);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.lastDecrease = System.nanoTime() - this.latencyThreshold;
+
+        String routeLabel = CatalogMetrics.label("route", route);
+        this.limitGauge = metrics.gauge("catalog_http_concurrency_limit",
+                "Requests processed concurrently before queueing by route", routeLabel);
+        this.queuedGauge = metrics.gauge("catalog_http_requests_queued",
+                "Requests waiting for the concurrency limit by route", routeLabel);
+        String shed = "catalog_http_requests_shed_total";
+        String shedHelp = "Requests rejected with a 503 by the concurrency limiter by route and reason";
+        this.shedLimit = metrics.counter(shed, shedHelp, routeLabel + "," + CatalogMetrics.label("reason", "limit"));
+        this.shedQueueTimeout = metrics.counter(shed, shedHelp,
+                routeLabel + "," + CatalogMetrics.label("reason", "queue_timeout"));
+        publishLimit();
+    }
+
+    /**
+     * Returns the limiter of a route, or null when admission control is disabled.
+     */
+    public static ConcurrencyLimiter create(Vertx vertx, JsonObject config, String route, CatalogMetrics metrics) {
+        if (!config.getBoolean("catalog.admission.enabled", false)) {
+            return null;
+        }
+        return new ConcurrencyLimiter(vertx, route,
+                config.getInteger("catalog.admission.initial-limit", DEFAULT_INITIAL_LIMIT),
+                config.getInteger("catalog.admission.min-limit", DEFAULT_MIN_LIMIT),
+                config.getInteger("catalog.admission.max-limit", DEFAULT_MAX_LIMIT),
+                config.getInteger("catalog.admission.max-queue-size", DEFAULT_MAX_QUEUE_SIZE),
+                config.getLong("catalog.admission.queue-timeout", DEFAULT_QUEUE_TIMEOUT),
+                config.getLong("catalog.admission.latency-threshold", DEFAULT_LATENCY_THRESHOLD),
+                config.getDouble("catalog.admission.backoff-ratio", DEFAULT_BACKOFF_RATIO),
+                config.getInteger("catalog.admission.retry-after", DEFAULT_RETRY_AFTER),
+                metrics);
+    }
+
+    /**
+     * Wraps a route handler so that it is only called for the requests admitted by this limiter.
+     */
+    public Handler<RoutingContext> limit(Handler<RoutingContext> handler) {
+        return rc -> {
+            if (inFlight < limit()) {
+                admit(rc, handler);
+            } else if (queue.size() < maxQueueSize) {
+                // the body of a queued request is kept for its handler, which may not have read it yet
+                rc.request().pause();
+                queue.add(new Waiting(rc, handler, System.nanoTime()));
+                queuedGauge.increment();
+                scheduleExpiry();
+            } else {
+                shedLimit.increment();
+                reject(rc);
+            }
+        };
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return inFlight;
+    }
+
+    int queued() {
+        return queue.size();
+    }
+
+    private void admit(RoutingContext rc, Handler<RoutingContext> handler) {
+        long start = System.nanoTime();
+        inFlight++;
+        rc.addBodyEndHandler(v -> {
+            int status = rc.response().getStatusCode();
+            // a 503 is either shed by another limiter or a dependency not ready yet, not a sign of overload
+            onSample(System.nanoTime() - start, status >= 500 && status != 503, System.nanoTime());
+            inFlight--;
+            drain();
+        });
+        handler.handle(rc);
+    }
+
+    /**
+     * Adjusts the limit with the latency of a request completed at {@code now}, while still counted in flight.
+     */
+    void onSample(long latency, boolean failed, long now) {
+        if (failed || latency > latencyThreshold) {
+            if (now - lastDecrease >= latencyThreshold) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecrease = now;
+            }
+        } else if (inFlight * 2 >= limit()) {
+            // the limit only grows when it is used, an idle route would otherwise grow it without bound
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        publishLimit();
+    }
+
+    private void drain() {
+        long now = System.nanoTime();
+        while (inFlight < limit() && !queue.isEmpty()) {
+            Waiting waiting = queue.poll();
+            queuedGauge.decrement();
+            if (now - waiting.queued > queueTimeout) {
+                shedQueueTimeout.increment();
+                reject(waiting.rc);
+            } else if (!waiting.rc.response().closed()) {
+                admit(waiting.rc, waiting.handler);
+                // once the handler has set its body handlers
+                waiting.rc.request().resume();
+            }
+        }
+    }
+
+    /**
+     * Rejects the requests waiting for longer than the queue timeout, even when no request completes to make room:
+     * a route stuck on a dead database must not hold the queued requests until the database times out.
+     */
+    private void scheduleExpiry() {
+        if (timer != -1 || queue.isEmpty()) {
+            return;
+        }
+        long delay = queue.peek().queued + queueTimeout - System.nanoTime();
+        timer = vertx.setTimer(Math.max(1, TimeUnit.NANOSECONDS.toMillis(delay) + 1), id -> {
+            timer = -1;
+            long now = System.nanoTime();
+            while (!queue.isEmpty() && now - queue.peek().queued > queueTimeout) {
+                queuedGauge.decrement();
+                shedQueueTimeout.increment();
+                reject(queue.poll().rc);
+            }
+            scheduleExpiry();
+        });
+    }
+
+    private void reject(RoutingContext rc) {
+        if (!rc.response().closed()) {
+            rc.response()
+                    .setStatusCode(503)
+                    .putHeader("Retry-After", retryAfter)
+                    .end("Too many requests, retry later");
+            // the rest of the body is discarded
+            rc.request().resume();
+        }
+    }
+
+    private void publishLimit() {
+        int current = limit();
+        if (current != publishedLimit) {
+            limitGauge.add(current - publishedLimit);
+            publishedLimit = current;
+        }
+    }
+
+    private static class Waiting {
+
+        private final RoutingContext rc;
+
+        private final Handler<RoutingContext> handler;
+
+        private final long queued;
+
+        private Waiting(RoutingContext rc, Handler<RoutingContext> handler, long queued) {
+            this.rc = rc;
+            this.handler = handler;
+            this.queued = queued;
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.redhat.coolstore.catalog.api;
+
+import java.util.List;
+
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Writes the products collection to an HTTP response, page by page, for the {@link ProductStreamer} and the
+ * {@link ProductExporter}.
+ * <p/>
+ * The collection is read from the catalog service, so through its connection pool and circuit breaker, in pages of
+ * {@code batchSize} documents ordered by itemId, each page starting after the last itemId of the previous one. The next page is only requested once the previous one has been written and the
+ * response write queue has drained, so the memory used per request is bounded by the batch size. The completion
+ * handler is called once, with the number of products written or with the failure, including when the client
+ * leaves while a page is read or while the write queue drains.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the owning verticle.
+ */
+abstract class PagedProductWriter {
+
+    protected final HttpServerResponse response;
+
+    private final CatalogService catalogService;
+    private final int batchSize;
+    private final Handler<AsyncResult<Long>> completionHandler;
+
+    private String lastItemId;
+    private long count;
+    private boolean closed;
+    private boolean draining;
+    private boolean completed;
+
+    PagedProductWriter(CatalogService catalogService, int batchSize, HttpServerResponse response,
+            Handler<AsyncResult<Long>> completionHandler) {
+        this.catalogService = catalogService;
+        this.batchSize = batchSize;
+        this.response = response;
+        this.completionHandler = completionHandler;
+        response.closeHandler(v -> {
+            closed = true;
+            if (draining) {
+                // the write queue of a closed connection never drains
+                draining = false;
+                response.drainHandler(null);
+                complete(Future.failedFuture("Connection closed by client"));
+            }
+        });
+    }
+
+    /**
+     * Writes a page of documents to the response, and ends the response when it is the last page.
+     */
+    protected abstract void write(List<JsonObject> page, boolean last);
+
+    /**
+     * Called once the writer is done, whether it succeeded or not, to release what it holds.
+     */
+    protected void release() {
+    }
+
+    /**
+     * Returns the number of products written before the current page.
+     */
+    protected long count() {
+        return count;
+    }
+
+    void start() {
+        next();
+    }
+
+    private void next() {
+        catalogService.getProductPage(lastItemId, batchSize, ar -> {
+            if (closed) {
+                complete(Future.failedFuture("Connection closed by client"));
+            } else if (ar.failed()) {
+                fail(ar.cause());
+            } else {
+                page(ar.result());
+            }
+        });
+    }
+
+    private void page(List<JsonObject> page) {
+        boolean last = page.size() < batchSize;
+        try {
+            write(page, last);
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        count += page.size();
+        if (!page.isEmpty()) {
+            lastItemId = page.get(page.size() - 1).getString("itemId");
+        }
+        if (last) {
+            complete(Future.succeededFuture(count));
+        } else if (response.writeQueueFull()) {
+            draining = true;
+            response.drainHandler(v -> {
+                draining = false;
+                response.drainHandler(null);
+                next();
+            });
+        } else {
+            next();
+        }
+    }
+
+    private void fail(Throwable cause) {
+        if (response.headWritten()) {
+            // too late for an error response
+            response.close();
+        }
+        complete(Future.failedFuture(cause));
+    }
+
+    private void complete(AsyncResult<Long> result) {
+        if (completed) {
+            return;
+        }
+        completed = true;
+        release();
+        completionHandler.handle(result);
+    }
+
+}
@@ -0,0 +1,276 @@
+package com.redhat.coolstore.catalog.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.coolstore.catalog.model.Product;
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Handles {@code POST /products/batch}.
+ * <p/>
+ * The body is either a JSON array of products, or a stream of products in NDJSON format (one JSON object per
+ * line) when the content type is {@code application/x-ndjson}. Products are sent to the catalog service in
+ * batches of {@code batchSize}, one batch at a time. NDJSON requests are parsed as they arrive and paused while a
+ * batch is written, so that the whole stream is never held in memory.
+ * <p/>
+ * The response holds the number of products written and failed, and a result per product with its position in
+ * the request body. When a batch can not be written at all, the ingestion stops: the response is a
+ * {@code 207 Multi-Status} with the results so far, the products of the failed batch and the ones not yet sent
+ * reported as errors, and the cause in {@code error}. The rest of the request body is read and discarded.
+ */
+public class ProductBatchHandler implements Handler<RoutingContext> {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    public static final long DEFAULT_MAX_BODY_SIZE = 50 * 1024 * 1024;
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final CatalogService catalogService;
+
+    private final int batchSize;
+
+    private final long maxBodySize;
+
+    public ProductBatchHandler(CatalogService catalogService, int batchSize, long maxBodySize) {
+        this.catalogService = catalogService;
+        this.batchSize = batchSize;
+        this.maxBodySize = maxBodySize;
+    }
+
+    @Override
+    public void handle(RoutingContext rc) {
+        String contentType = rc.request().getHeader("Content-type");
+        Ingestion ingestion = new Ingestion(rc);
+        if (contentType != null && contentType.startsWith(NDJSON)) {
+            ingestion.ndjson();
+        } else {
+            ingestion.jsonArray();
+        }
+    }
+
+    private class Ingestion {
+
+        private final RoutingContext rc;
+        private final HttpServerRequest request;
+
+        private final JsonArray results = new JsonArray();
+        private int succeeded;
+        private int failed;
+
+        private final List<Product> current = new ArrayList<>();
+        private final List<Integer> currentIndexes = new ArrayList<>();
+        private int index;
+
+        private boolean inFlight;
+        private boolean ended;
+        private boolean aborted;
+
+        private Ingestion(RoutingContext rc) {
+            this.rc = rc;
+            this.request = rc.request();
+        }
+
+        private void ndjson() {
+            RecordParser parser = RecordParser.newDelimited("\n", line -> {
+                String record = line.toString().trim();
+                if (!record.isEmpty() && !aborted) {
+                    add(record);
+                }
+            });
+            request.handler(parser);
+            request.exceptionHandler(this::abort);
+            request.endHandler(v -> {
+                ended = true;
+                // the last record may not end with a line break
+                parser.handle(Buffer.buffer("\n"));
+                flush();
+            });
+        }
+
+        private void jsonArray() {
+            Buffer body = Buffer.buffer();
+            request.handler(buffer -> {
+                if (aborted) {
+                    return;
+                }
+                if (body.length() + buffer.length() > maxBodySize) {
+                    aborted = true;
+                    rc.fail(413);
+                    return;
+                }
+                body.appendBuffer(buffer);
+            });
+            request.exceptionHandler(this::abort);
+            request.endHandler(v -> {
+                if (aborted) {
+                    return;
+                }
+                JsonArray products;
+                try {
+                    products = body.toJsonArray();
+                } catch (DecodeException e) {
+                    rc.fail(400);
+                    return;
+                }
+                ended = true;
+                products.forEach(json -> {
+                    if (json instanceof JsonObject) {
+                        add((JsonObject) json);
+                    } else {
+                        error(index++, null, "Not a JSON object");
+                    }
+                });
+                flush();
+            });
+        }
+
+        /**
+         * Stops the ingestion when the request fails, the products of the batch being written, if any, are written
+         * but not reported.
+         */
+        private void abort(Throwable cause) {
+            if (aborted) {
+                return;
+            }
+            aborted = true;
+            if (!rc.response().ended()) {
+                rc.fail(cause);
+            }
+        }
+
+        private void add(String record) {
+            JsonObject json;
+            try {
+                json = new JsonObject(record);
+            } catch (DecodeException e) {
+                error(index++, null, "Invalid JSON: " + e.getMessage());
+                return;
+            }
+            add(json);
+        }
+
+        private void add(JsonObject json) {
+            int position = index++;
+            Product product;
+            try {
+                product = new Product(json);
+            } catch (RuntimeException e) {
+                error(position, json.getValue("itemId"), "Invalid product");
+                return;
+            }
+            if (product.getItemId() == null) {
+                error(position, null, "Missing itemId");
+                return;
+            }
+            current.add(product);
+            currentIndexes.add(position);
+            if (current.size() >= batchSize && !ended) {
+                flush();
+            }
+        }
+
+        private void error(int position, Object itemId, String message) {
+            failed++;
+            results.add(new JsonObject()
+                    .put("index", position)
+                    .put("itemId", itemId)
+                    .put("status", "error")
+                    .put("error", message));
+        }
+
+        private void flush() {
+            if (inFlight || aborted) {
+                return;
+            }
+            if (current.isEmpty()) {
+                if (ended) {
+                    done();
+                }
+                return;
+            }
+            int size = Math.min(batchSize, current.size());
+            List<Product> batch = new ArrayList<>(current.subList(0, size));
+            List<Integer> batchIndexes = new ArrayList<>(currentIndexes.subList(0, size));
+            current.subList(0, size).clear();
+            currentIndexes.subList(0, size).clear();
+            inFlight = true;
+            if (!ended) {
+                request.pause();
+            }
+            catalogService.addProducts(batch, ar -> {
+                inFlight = false;
+                if (ar.failed()) {
+                    stop(batch, batchIndexes, ar.cause());
+                    return;
+                }
+                JsonObject result = ar.result();
+                succeeded += result.getInteger("succeeded", 0);
+                failed += result.getInteger("failed", 0);
+                JsonArray itemResults = result.getJsonArray("results", new JsonArray());
+                for (int i = 0; i < itemResults.size(); i++) {
+                    results.add(itemResults.getJsonObject(i).put("index", batchIndexes.get(i)));
+                }
+                if (ended || current.size() >= batchSize) {
+                    flush();
+                }
+                if (!ended && !inFlight) {
+                    request.resume();
+                }
+            });
+        }
+
+        /**
+         * Stops the ingestion when a batch fails, and answers with the results so far.
+         */
+        private void stop(List<Product> batch, List<Integer> batchIndexes, Throwable cause) {
+            aborted = true;
+            String message = cause.getMessage();
+            for (int i = 0; i < batch.size(); i++) {
+                error(batchIndexes.get(i), batch.get(i).getItemId(), message);
+            }
+            for (int i = 0; i < current.size(); i++) {
+                error(currentIndexes.get(i), current.get(i).getItemId(), "Not written: " + message);
+            }
+            current.clear();
+            currentIndexes.clear();
+            if (!ended) {
+                // the records still to come are ignored, the connection stays usable once they are read
+                request.resume();
+            }
+            if (!rc.response().ended()) {
+                rc.response().setStatusCode(207);
+                respond(summary().put("error", message));
+            }
+        }
+
+        private void done() {
+            respond(summary());
+        }
+
+        private JsonObject summary() {
+            return new JsonObject()
+                    .put("received", index)
+                    .put("succeeded", succeeded)
+                    .put("failed", failed)
+                    .put("results", results);
+        }
+
+        private void respond(JsonObject summary) {
+            rc.response()
+                    .putHeader("Content-type", "application/json")
+                    .end(summary.encode());
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.redhat.coolstore.catalog.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Exports the product catalog from the catalog service to a chunked HTTP response, one product per line, as newline
+ * delimited JSON or as CSV.
+ * <p/>
+ * As for the {@link ProductStreamer}, the collection is read in pages of {@code batchSize} documents by a
+ * {@link PagedProductWriter}. Documents are encoded as they come from the database, without building products, and
+ * are optionally gzip compressed on the fly.
+ */
+public class ProductExporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final String[] CSV_COLUMNS = {"itemId", "name", "desc", "price"};
+
+    public enum Format {
+
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv; charset=utf-8", "csv");
+
+        private final String contentType;
+
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * Returns the format with the given name, ignoring case, or null when there is no such format.
+         */
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final CatalogService catalogService;
+
+    private final int batchSize;
+
+    public ProductExporter(CatalogService catalogService, int batchSize) {
+        this.catalogService = catalogService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Writes the catalog to the response in the given format and ends it. The completion handler is called with the
+     * number of products written, or with the failure. When the failure happens after the first chunk was sent, the
+     * response can not be failed anymore and is closed instead.
+     */
+    public void export(HttpServerResponse response, Format format, boolean gzip,
+            Handler<AsyncResult<Long>> completionHandler) {
+        new Export(response, format, gzip, completionHandler).start();
+    }
+
+    private class Export extends PagedProductWriter {
+
+        private final Format format;
+
+        // the compressed bytes are taken out after each page, the deflater only keeps its window
+        private final ByteArrayOutputStream compressed;
+        private final GZIPOutputStream gzip;
+
+        private boolean started;
+
+        private Export(HttpServerResponse response, Format format, boolean gzip,
+                Handler<AsyncResult<Long>> completionHandler) {
+            super(catalogService, batchSize, response, completionHandler);
+            this.format = format;
+            if (gzip) {
+                this.compressed = new ByteArrayOutputStream(8192);
+                try {
+                    this.gzip = new GZIPOutputStream(compressed, 8192);
+                } catch (IOException e) {
+                    // can not happen with an in-memory stream
+                    throw new IllegalStateException(e);
+                }
+            } else {
+                this.compressed = null;
+                this.gzip = null;
+            }
+        }
+
+        @Override
+        protected void write(List<JsonObject> page, boolean last) {
+            StringBuilder chunk = new StringBuilder(page.size() * 256);
+            if (!started) {
+                response.setChunked(true)
+                        .putHeader("Content-type", format.contentType)
+                        .putHeader("Content-Disposition", "attachment; filename=\"products." + format.extension + "\"");
+                if (gzip != null) {
+                    response.putHeader("Content-Encoding", "gzip");
+                } else {
+                    // the export is compressed here or not at all, never by the server
+                    response.putHeader("Content-Encoding", "identity");
+                }
+                if (format == Format.CSV) {
+                    chunk.append(String.join(",", CSV_COLUMNS)).append("\r\n");
+                }
+                started = true;
+            }
+            for (JsonObject document : page) {
+                if (format == Format.CSV) {
+                    appendCsv(chunk, document);
+                } else {
+                    chunk.append(document.encode()).append('\n');
+                }
+            }
+            Buffer buffer = encode(chunk.toString(), last);
+            if (last) {
+                response.end(buffer);
+            } else if (buffer.length() > 0) {
+                response.write(buffer);
+            }
+        }
+
+        /**
+         * Frees the native memory of the deflater, which is otherwise only released by the garbage collector.
+         */
+        @Override
+        protected void release() {
+            if (gzip != null) {
+                try {
+                    gzip.close();
+                } catch (IOException e) {
+                    // can not happen with an in-memory stream
+                }
+            }
+        }
+
+        private Buffer encode(String chunk, boolean last) {
+            if (gzip == null) {
+                return Buffer.buffer(chunk);
+            }
+            try {
+                gzip.write(chunk.getBytes(StandardCharsets.UTF_8));
+                if (last) {
+                    gzip.finish();
+                }
+            } catch (IOException e) {
+                // can not happen with an in-memory stream
+                throw new IllegalStateException(e);
+            }
+            Buffer buffer = Buffer.buffer(compressed.toByteArray());
+            compressed.reset();
+            return buffer;
+        }
+    }
+
+    /**
+     * Appends a document as a CSV record, quoting the values which contain a separator, a quote or a line break.
+     */
+    static void appendCsv(StringBuilder csv, JsonObject document) {
+        for (int i = 0; i < CSV_COLUMNS.length; i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            Object value = document.getValue(CSV_COLUMNS[i]);
+            if (value == null) {
+                continue;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0
+                    || text.indexOf('\r') >= 0) {
+                csv.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else {
+                csv.append(text);
+            }
+        }
+        csv.append("\r\n");
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.redhat.coolstore.catalog.api;
+
+import java.util.List;
+
+import com.redhat.coolstore.catalog.model.Product;
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Streams the product catalog from the catalog service to a chunked HTTP response as a compact JSON array.
+ * <p/>
+ * The collection is read in pages of {@code batchSize} documents by a {@link PagedProductWriter}, so the memory
+ * used per request is bounded by the batch size, whatever the size of the catalog.
+ */
+public class ProductStreamer {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final Buffer ARRAY_START = Buffer.buffer("[");
+    private static final Buffer ARRAY_END = Buffer.buffer("]");
+    private static final Buffer SEPARATOR = Buffer.buffer(",");
+
+    private final CatalogService catalogService;
+
+    private final int batchSize;
+
+    public ProductStreamer(CatalogService catalogService, int batchSize) {
+        this.catalogService = catalogService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Writes the catalog to the response and ends it. The completion handler is called with the number of
+     * products written, or with the failure. When the failure happens after the first chunk was sent, the
+     * response can not be failed anymore and is closed instead.
+     */
+    public void stream(HttpServerResponse response, Handler<AsyncResult<Long>> completionHandler) {
+        new Cursor(response, completionHandler).start();
+    }
+
+    private class Cursor extends PagedProductWriter {
+
+        private boolean started;
+
+        private Cursor(HttpServerResponse response, Handler<AsyncResult<Long>> completionHandler) {
+            super(catalogService, batchSize, response, completionHandler);
+        }
+
+        @Override
+        protected void write(List<JsonObject> page, boolean last) {
+            if (!started) {
+                response.setChunked(true)
+                        .putHeader("Content-type", "application/json")
+                        .write(ARRAY_START);
+                started = true;
+            }
+            Buffer chunk = Buffer.buffer();
+            long written = count();
+            for (JsonObject document : page) {
+                if (written++ > 0) {
+                    chunk.appendBuffer(SEPARATOR);
+                }
+                chunk.appendString(new Product(document).toJson().encode());
+            }
+            if (chunk.length() > 0) {
+                response.write(chunk);
+            }
+            if (last) {
+                response.end(ARRAY_END);
+            }
+        }
+    }
+
+}
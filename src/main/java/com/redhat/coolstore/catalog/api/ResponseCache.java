@@ -0,0 +1,203 @@
+package com.redhat.coolstore.catalog.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import com.redhat.coolstore.catalog.verticle.service.ProductCache;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Cache of encoded response bodies for the product read endpoints, so that JSON encoding and entity tag hashing
+ * only happen when a product changes. Entries are invalidated by the product change events published by the
+ * catalog service. As those events only come from the writes handled by this Vert.x instance, entries also expire
+ * after {@code catalog.cache.ttl}, like the product cache of the catalog service, so the writes handled by the
+ * other instances are served after the same delay.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the owning verticle.
+ */
+public class ResponseCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final int maxSize;
+
+    private final long ttl;
+
+    private final boolean gzip;
+
+    private final LinkedHashMap<String, Entry> products;
+
+    private Entry all;
+
+    // bumped on every invalidation, so that responses computed before a change are not cached
+    private long generation;
+
+    public ResponseCache(int maxSize, long ttl, boolean gzip) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.gzip = gzip;
+        this.products = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResponseCache.this.maxSize;
+            }
+        };
+    }
+
+    public static ResponseCache create(JsonObject config) {
+        if (!config.getBoolean("catalog.http.response-cache.enabled", true)) {
+            return null;
+        }
+        return new ResponseCache(config.getInteger("catalog.http.response-cache.max-size", DEFAULT_MAX_SIZE),
+                config.getLong("catalog.cache.ttl", ProductCache.DEFAULT_TTL),
+                config.getBoolean("catalog.http.response-cache.gzip", false));
+    }
+
+    public Entry getProduct(String itemId) {
+        Entry entry = products.get(itemId);
+        if (entry != null && entry.expiresAt <= now()) {
+            products.remove(itemId);
+            return null;
+        }
+        return entry;
+    }
+
+    public Entry getProducts() {
+        if (all != null && all.expiresAt <= now()) {
+            all = null;
+        }
+        return all;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public Entry putProduct(String itemId, Buffer body, long loadGeneration) {
+        Entry entry = new Entry(body, gzip);
+        if (loadGeneration == generation) {
+            entry.expiresAt = now() + ttl;
+            products.put(itemId, entry);
+        }
+        return entry;
+    }
+
+    public Entry putProducts(Buffer body, long loadGeneration) {
+        Entry entry = new Entry(body, gzip);
+        if (loadGeneration == generation) {
+            entry.expiresAt = now() + ttl;
+            all = entry;
+        }
+        return entry;
+    }
+
+    public void invalidate(String itemId) {
+        generation++;
+        products.remove(itemId);
+        all = null;
+    }
+
+    public void clear() {
+        generation++;
+        products.clear();
+        all = null;
+    }
+
+    public boolean gzip() {
+        return gzip;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * An encoded response body, with its entity tag and its optional gzip compressed variant.
+     */
+    public static class Entry {
+
+        private final Buffer body;
+
+        private final boolean gzip;
+
+        private String etag;
+
+        private String gzipEtag;
+
+        private Buffer gzipped;
+
+        private long expiresAt;
+
+        public Entry(Buffer body, boolean gzip) {
+            this.body = body;
+            this.gzip = gzip;
+        }
+
+        public Buffer body() {
+            return body;
+        }
+
+        /**
+         * Returns the strong entity tag of the body, a hash of its content computed on first use.
+         */
+        public String etag() {
+            if (etag == null) {
+                try {
+                    byte[] digest = MessageDigest.getInstance("SHA-1").digest(body.getBytes());
+                    StringBuilder tag = new StringBuilder(34).append('"');
+                    for (int i = 0; i < 16; i++) {
+                        tag.append(Character.forDigit((digest[i] >> 4) & 0xf, 16))
+                                .append(Character.forDigit(digest[i] & 0xf, 16));
+                    }
+                    etag = tag.append('"').toString();
+                } catch (NoSuchAlgorithmException e) {
+                    // every Java platform supports SHA-1
+                    throw new IllegalStateException(e);
+                }
+            }
+            return etag;
+        }
+
+        /**
+         * Returns the strong entity tag of the gzip compressed body, the one of the body with a {@code -gzip} suffix.
+         */
+        public String gzipEtag() {
+            if (gzipEtag == null) {
+                String tag = etag();
+                gzipEtag = tag.substring(0, tag.length() - 1) + "-gzip\"";
+            }
+            return gzipEtag;
+        }
+
+        /**
+         * Returns the gzip compressed body, compressing it on first use. Returns null when pre-compression is
+         * disabled.
+         */
+        public Buffer gzipped() {
+            if (!gzip) {
+                return null;
+            }
+            if (gzipped == null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length() / 4 + 32);
+                try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+                    out.write(body.getBytes());
+                } catch (IOException e) {
+                    // can not happen with an in-memory stream
+                    throw new IllegalStateException(e);
+                }
+                gzipped = Buffer.buffer(bytes.toByteArray());
+            }
+            return gzipped;
+        }
+    }
+
+}
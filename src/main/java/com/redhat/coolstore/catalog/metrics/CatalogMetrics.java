@@ -0,0 +1,163 @@
+package com.redhat.coolstore.catalog.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Metrics of the catalog service, shared by all the verticles of a Vert.x instance and exposed in the Prometheus
+ * text format.
+ * <p/>
+ * Metrics are looked up once, when a verticle starts, and then updated without locking. Updating a counter, a gauge
+ * or a histogram does not allocate; the handlers wrapped by {@link #timed} allocate one small closure per request, to
+ * carry the start time to the end of the request.
+ */
+public class CatalogMetrics implements Shareable {
+
+    private static final String MAP_NAME = "catalog.metrics";
+
+    private final ConcurrentMap<String, Family<Histogram>> histograms = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Family<LongAdder>> gauges = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Family<LongAdder>> counters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Family<LongSupplier>> suppliedGauges = new ConcurrentHashMap<>();
+
+    public static CatalogMetrics get(Vertx vertx) {
+        LocalMap<String, CatalogMetrics> map = vertx.sharedData().getLocalMap(MAP_NAME);
+        CatalogMetrics metrics = map.get(MAP_NAME);
+        if (metrics == null) {
+            CatalogMetrics created = new CatalogMetrics();
+            metrics = map.putIfAbsent(MAP_NAME, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    public Histogram httpRequestDuration(String route) {
+        return histogram("catalog_http_request_duration_seconds", "HTTP request latency by route", label("route", route));
+    }
+
+    public LongAdder httpRequestsInFlight(String route) {
+        return gauge("catalog_http_requests_in_flight", "HTTP requests being processed by route", label("route", route));
+    }
+
+    public LongAdder httpConnections() {
+        return gauge("catalog_http_connections", "Open HTTP connections", "");
+    }
+
+    public Histogram mongoOperationDuration(String operation) {
+        return histogram("catalog_mongo_operation_duration_seconds", "MongoDB operation latency by operation",
+                label("operation", operation));
+    }
+
+    public LongAdder eventBusPending(String address) {
+        return gauge("catalog_eventbus_pending_messages", "Event bus messages sent and waiting for a reply by address",
+                label("address", address));
+    }
+
+    public Histogram histogram(String name, String help, String labels) {
+        return histograms.computeIfAbsent(name, n -> new Family<>(help))
+                .series.computeIfAbsent(labels, l -> new Histogram());
+    }
+
+    public LongAdder gauge(String name, String help, String labels) {
+        return gauges.computeIfAbsent(name, n -> new Family<>(help))
+                .series.computeIfAbsent(labels, l -> new LongAdder());
+    }
+
+    public LongAdder counter(String name, String help, String labels) {
+        return counters.computeIfAbsent(name, n -> new Family<>(help))
+                .series.computeIfAbsent(labels, l -> new LongAdder());
+    }
+
+    /**
+     * Registers a gauge whose value is read when the metrics are scraped.
+     */
+    public void gauge(String name, String help, String labels, LongSupplier value) {
+        suppliedGauges.computeIfAbsent(name, n -> new Family<>(help)).series.put(labels, value);
+    }
+
+    /**
+     * Wraps a route handler to record the latency and the number of in-flight requests of the route. The metrics are
+     * looked up once, but a body end handler is allocated per request.
+     */
+    public Handler<RoutingContext> timed(String route, Handler<RoutingContext> handler) {
+        Histogram duration = httpRequestDuration(route);
+        LongAdder inFlight = httpRequestsInFlight(route);
+        return rc -> {
+            long start = System.nanoTime();
+            inFlight.increment();
+            rc.addBodyEndHandler(v -> {
+                inFlight.decrement();
+                duration.recordSince(start);
+            });
+            handler.handle(rc);
+        };
+    }
+
+    public static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * Returns all the metrics in the Prometheus text exposition format.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        new TreeMap<>(histograms).forEach((name, family) -> {
+            family.header(out, name, "histogram");
+            new TreeMap<>(family.series).forEach((labels, histogram) -> histogram.write(out, name, labels));
+        });
+        new TreeMap<>(gauges).forEach((name, family) -> {
+            family.header(out, name, "gauge");
+            new TreeMap<>(family.series).forEach((labels, value) -> sample(out, name, labels, value.sum()));
+        });
+        new TreeMap<>(counters).forEach((name, family) -> {
+            family.header(out, name, "counter");
+            new TreeMap<>(family.series).forEach((labels, value) -> sample(out, name, labels, value.sum()));
+        });
+        new TreeMap<>(suppliedGauges).forEach((name, family) -> {
+            family.header(out, name, "gauge");
+            new TreeMap<>(family.series).forEach((labels, value) -> sample(out, name, labels, value.getAsLong()));
+        });
+        return out.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static class Family<T> {
+
+        private final String help;
+
+        private final Map<String, T> series = new ConcurrentHashMap<>();
+
+        private Family(String help) {
+            this.help = help;
+        }
+
+        private void header(StringBuilder out, String name, String type) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+    }
+
+}
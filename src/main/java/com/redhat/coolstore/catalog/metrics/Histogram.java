@@ -0,0 +1,81 @@
+package com.redhat.coolstore.catalog.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets. Recording a value does not allocate and does not lock, so it can be
+ * called from any event loop on the request path.
+ */
+public class Histogram {
+
+    static final double[] DEFAULT_BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    private final double[] buckets;
+
+    private final long[] bounds;
+
+    // one counter per bucket, the last one counts the values above the highest bound
+    private final LongAdder[] counts;
+
+    private final LongAdder sum = new LongAdder();
+
+    public Histogram() {
+        this(DEFAULT_BUCKETS);
+    }
+
+    /**
+     * @param buckets the upper bounds of the buckets, in seconds, in increasing order
+     */
+    public Histogram(double[] buckets) {
+        this.buckets = buckets;
+        this.bounds = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            bounds[i] = (long) (buckets[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+        this.counts = new LongAdder[buckets.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int i = 0;
+        while (i < bounds.length && nanos > bounds[i]) {
+            i++;
+        }
+        counts[i].increment();
+        sum.add(nanos);
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, as returned by {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        long count = 0;
+        for (LongAdder c : counts) {
+            count += c.sum();
+        }
+        return count;
+    }
+
+    void write(StringBuilder out, String name, String labels) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += counts[i].sum();
+            out.append(name).append("_bucket{").append(prefix).append("le=\"").append(buckets[i]).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        cumulative += counts[buckets.length].sum();
+        out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ").append(sum.sum() / 1e9).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+
+}
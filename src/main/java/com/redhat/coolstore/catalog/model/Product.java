@@ -1,6 +1,7 @@
 package com.redhat.coolstore.catalog.model;
 
 import java.io.Serializable;
+import java.util.Collection;
 
 import io.vertx.codegen.annotations.DataObject;
 import io.vertx.core.json.JsonObject;
@@ -68,4 +69,22 @@ public class Product implements Serializable {
         return json;
     }
 
+    /**
+     * Returns the given fields of the product only. The itemId is always included, unknown fields are ignored.
+     */
+    public JsonObject toJson(Collection<String> fields) {
+        final JsonObject json = new JsonObject();
+        json.put("itemId", this.itemId);
+        if (fields.contains("name")) {
+            json.put("name", this.name);
+        }
+        if (fields.contains("desc")) {
+            json.put("desc", this.desc);
+        }
+        if (fields.contains("price")) {
+            json.put("price", this.price);
+        }
+        return json;
+    }
+
 }
@@ -0,0 +1,210 @@
+package com.redhat.coolstore.catalog.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+/**
+ * In-memory index of the products sorted by price, for price range and cheapest or most expensive first listings.
+ * <p/>
+ * Prices are kept in a sorted {@code double[]} with a parallel {@code int[]} of product slots, so that a range
+ * query is two binary searches and a slice, without boxing. Products with the same price are kept in insertion
+ * order. Updates shift the arrays, which is cheap compared to the database write they follow.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the owning verticle.
+ */
+public class PriceIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] prices = new double[INITIAL_CAPACITY];
+
+    private int[] slots = new int[INITIAL_CAPACITY];
+
+    private int size;
+
+    private final List<Product> products = new ArrayList<>();
+
+    private final Map<String, Integer> slotsByItemId = new HashMap<>();
+
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+
+    private int freeSize;
+
+    /**
+     * Adds a product, or moves the previous version of a product with the same itemId to its new price.
+     */
+    public void put(Product product) {
+        Integer slot = slotsByItemId.get(product.getItemId());
+        if (slot != null) {
+            removeAt(position(products.get(slot).getPrice(), slot));
+            products.set(slot, product);
+        } else {
+            slot = allocate(product);
+        }
+        insertAt(upperBound(product.getPrice()), product.getPrice(), slot);
+    }
+
+    /**
+     * Adds the products loaded from the database, except the ones already in the index, which are assumed to be
+     * more recent. When the loaded products hold the same itemId more than once, the last one is kept. The index is
+     * rebuilt with a single sort.
+     */
+    public void load(List<Product> loaded) {
+        List<Product> all = new ArrayList<>(slotsByItemId.size() + loaded.size());
+        for (int i = 0; i < size; i++) {
+            all.add(products.get(slots[i]));
+        }
+        Map<String, Integer> positions = new HashMap<>();
+        for (Product product : loaded) {
+            if (slotsByItemId.containsKey(product.getItemId())) {
+                continue;
+            }
+            Integer position = positions.putIfAbsent(product.getItemId(), all.size());
+            if (position == null) {
+                all.add(product);
+            } else {
+                all.set(position, product);
+            }
+        }
+        // the sort is stable, so products with the same price stay in loading order
+        all.sort(Comparator.comparingDouble(Product::getPrice));
+
+        products.clear();
+        slotsByItemId.clear();
+        freeSize = 0;
+        size = 0;
+        ensureCapacity(all.size());
+        for (Product product : all) {
+            int slot = allocate(product);
+            prices[size] = product.getPrice();
+            slots[size] = slot;
+            size++;
+        }
+    }
+
+    public void remove(String itemId) {
+        Integer slot = slotsByItemId.remove(itemId);
+        if (slot != null) {
+            removeAt(position(products.get(slot).getPrice(), slot));
+            products.set(slot, null);
+            if (freeSize == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSize * 2);
+            }
+            freeSlots[freeSize++] = slot;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns at most {@code limit} products with a price between {@code minPrice} and {@code maxPrice} included,
+     * cheapest first, or most expensive first when {@code descending} is true.
+     */
+    public List<Product> range(double minPrice, double maxPrice, int limit, boolean descending) {
+        int from = lowerBound(minPrice);
+        int to = upperBound(maxPrice);
+        if (from >= to || limit <= 0) {
+            return new ArrayList<>();
+        }
+        int count = Math.min(limit, to - from);
+        List<Product> result = new ArrayList<>(count);
+        if (descending) {
+            for (int i = to - 1; i >= to - count; i--) {
+                result.add(products.get(slots[i]));
+            }
+        } else {
+            for (int i = from; i < from + count; i++) {
+                result.add(products.get(slots[i]));
+            }
+        }
+        return result;
+    }
+
+    private int allocate(Product product) {
+        int slot;
+        if (freeSize > 0) {
+            slot = freeSlots[--freeSize];
+            products.set(slot, product);
+        } else {
+            slot = products.size();
+            products.add(product);
+        }
+        slotsByItemId.put(product.getItemId(), slot);
+        return slot;
+    }
+
+    /**
+     * Returns the first position with a price greater than or equal to the given price.
+     */
+    private int lowerBound(double price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(prices[mid], price) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the first position with a price strictly greater than the given price.
+     */
+    private int upperBound(double price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(prices[mid], price) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int position(double price, int slot) {
+        for (int i = lowerBound(price); i < size && Double.compare(prices[i], price) == 0; i++) {
+            if (slots[i] == slot) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Product slot " + slot + " not found at price " + price);
+    }
+
+    private void insertAt(int position, double price, int slot) {
+        ensureCapacity(size + 1);
+        System.arraycopy(prices, position, prices, position + 1, size - position);
+        System.arraycopy(slots, position, slots, position + 1, size - position);
+        prices[position] = price;
+        slots[position] = slot;
+        size++;
+    }
+
+    private void removeAt(int position) {
+        System.arraycopy(prices, position + 1, prices, position, size - position - 1);
+        System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+        size--;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > prices.length) {
+            int newCapacity = Math.max(capacity, prices.length * 2);
+            prices = Arrays.copyOf(prices, newCapacity);
+            slots = Arrays.copyOf(slots, newCapacity);
+        }
+    }
+
+}
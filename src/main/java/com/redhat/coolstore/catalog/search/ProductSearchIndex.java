@@ -0,0 +1,292 @@
+package com.redhat.coolstore.catalog.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+/**
+ * In-memory inverted index over the name and description of the products, for full text and typeahead search.
+ * <p/>
+ * Text is split into lower case, accent free tokens. All the tokens of a query must match; the last one also
+ * matches as a prefix, so that results are returned while the user is typing. Results are ranked by the sum of the
+ * weights of the matching terms, where a term in the name weighs more than a term in the description, and rare
+ * terms weigh more than frequent ones.
+ * <p/>
+ * Scores are accumulated in arrays indexed by document, reused from query to query, so that a short prefix matching
+ * most of the catalog does not allocate per matching document.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the owning verticle.
+ */
+public class ProductSearchIndex {
+
+    static final float NAME_WEIGHT = 3.0f;
+    static final float DESC_WEIGHT = 1.0f;
+
+    // a term only matching as a prefix ranks below the same term matching exactly
+    static final float PREFIX_FACTOR = 0.5f;
+
+    private static final Comparator<Hit> RANKING = Comparator.<Hit>comparingDouble(h -> h.score)
+            .thenComparing(h -> h.product.getItemId(), Comparator.reverseOrder());
+
+    // sorted, so that prefix matches are a range scan
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+
+    private final Map<String, Integer> docIds = new HashMap<>();
+
+    private final List<Product> docs = new ArrayList<>();
+
+    private final List<String[]> docTerms = new ArrayList<>();
+
+    private final List<Integer> freeDocIds = new ArrayList<>();
+
+    // scoring state of the current query, indexed by docId and reused from query to query
+    private float[] scores = new float[0];
+    private float[] tokenScores = new float[0];
+    private int[] matchedTokens = new int[0];
+    private int[] stamps = new int[0];
+    private int[] candidates = new int[0];
+    private int candidateCount;
+    private int queryStamp;
+
+    /**
+     * Adds a product, or replaces the previous version of a product with the same itemId.
+     */
+    public void put(Product product) {
+        Integer docId = docIds.get(product.getItemId());
+        if (docId != null) {
+            removeTerms(docId);
+        } else if (!freeDocIds.isEmpty()) {
+            docId = freeDocIds.remove(freeDocIds.size() - 1);
+            docIds.put(product.getItemId(), docId);
+        } else {
+            docId = docs.size();
+            docs.add(null);
+            docTerms.add(null);
+            docIds.put(product.getItemId(), docId);
+        }
+
+        Map<String, Float> weights = new HashMap<>();
+        addWeights(weights, product.getName(), NAME_WEIGHT);
+        addWeights(weights, product.getDesc(), DESC_WEIGHT);
+        for (Map.Entry<String, Float> weight : weights.entrySet()) {
+            terms.computeIfAbsent(weight.getKey(), t -> new Postings()).add(docId, weight.getValue());
+        }
+        docs.set(docId, product);
+        docTerms.set(docId, weights.keySet().toArray(new String[weights.size()]));
+    }
+
+    /**
+     * Adds the products loaded from the database, except the ones already in the index, which are assumed to be
+     * more recent.
+     */
+    public void load(List<Product> products) {
+        for (Product product : products) {
+            if (!docIds.containsKey(product.getItemId())) {
+                put(product);
+            }
+        }
+    }
+
+    public void remove(String itemId) {
+        Integer docId = docIds.remove(itemId);
+        if (docId != null) {
+            removeTerms(docId);
+            docs.set(docId, null);
+            docTerms.set(docId, null);
+            freeDocIds.add(docId);
+        }
+    }
+
+    public int size() {
+        return docIds.size();
+    }
+
+    public int terms() {
+        return terms.size();
+    }
+
+    /**
+     * Returns the best {@code limit} products matching the query, best match first.
+     */
+    public List<Product> search(String query, int limit) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        startQuery();
+        for (int i = 0; i < tokens.length; i++) {
+            if (match(tokens[i], i, i == tokens.length - 1) == 0) {
+                return new ArrayList<>();
+            }
+        }
+
+        // keep the best hits in a min heap bounded by the limit
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(limit, candidateCount) + 1, RANKING);
+        for (int i = 0; i < candidateCount; i++) {
+            int docId = candidates[i];
+            if (matchedTokens[docId] != tokens.length) {
+                continue;
+            }
+            float score = scores[docId];
+            if (best.size() == limit && score < best.peek().score) {
+                continue;
+            }
+            best.add(new Hit(docs.get(docId), score));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        Product[] results = new Product[best.size()];
+        for (int i = results.length - 1; i >= 0; i--) {
+            results[i] = best.poll().product;
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * Resets the scores for a new query. The score arrays are indexed by docId and reused from query to query, a
+     * document only counting as scored when its stamp is the one of the current query.
+     */
+    private void startQuery() {
+        int size = docs.size();
+        if (scores.length < size) {
+            int capacity = Math.max(size, scores.length * 2);
+            scores = new float[capacity];
+            tokenScores = new float[capacity];
+            matchedTokens = new int[capacity];
+            stamps = new int[capacity];
+            candidates = new int[capacity];
+            queryStamp = 0;
+        }
+        if (++queryStamp == 0) {
+            Arrays.fill(stamps, 0);
+            queryStamp = 1;
+        }
+        candidateCount = 0;
+    }
+
+    /**
+     * Scores the documents matching the token, as the i-th token of the query: only the documents which matched all
+     * the previous tokens are kept. When the token is a prefix of several terms, the best scoring term counts for
+     * each document. Returns the number of documents still matching.
+     */
+    private int match(String token, int i, boolean prefix) {
+        Map<String, Postings> matching = prefix
+                ? terms.subMap(token, true, token + Character.MAX_VALUE, false)
+                : terms.subMap(token, true, token, true);
+        int matched = 0;
+        for (Map.Entry<String, Postings> term : matching.entrySet()) {
+            Postings postings = term.getValue();
+            float idf = (float) Math.log(1 + (double) docIds.size() / postings.size);
+            float factor = term.getKey().length() == token.length() ? 1.0f : PREFIX_FACTOR;
+            for (int p = 0; p < postings.size; p++) {
+                int docId = postings.docs[p];
+                float score = postings.weights[p] * idf * factor;
+                if (stamps[docId] != queryStamp) {
+                    if (i > 0) {
+                        continue;
+                    }
+                    stamps[docId] = queryStamp;
+                    matchedTokens[docId] = 0;
+                    scores[docId] = 0;
+                    candidates[candidateCount++] = docId;
+                }
+                if (matchedTokens[docId] == i) {
+                    matchedTokens[docId] = i + 1;
+                    tokenScores[docId] = score;
+                    scores[docId] += score;
+                    matched++;
+                } else if (matchedTokens[docId] == i + 1 && score > tokenScores[docId]) {
+                    scores[docId] += score - tokenScores[docId];
+                    tokenScores[docId] = score;
+                }
+            }
+        }
+        return matched;
+    }
+
+    private void removeTerms(int docId) {
+        for (String term : docTerms.get(docId)) {
+            Postings postings = terms.get(term);
+            postings.remove(docId);
+            if (postings.size == 0) {
+                terms.remove(term);
+            }
+        }
+    }
+
+    private static void addWeights(Map<String, Float> weights, String text, float fieldWeight) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokenize(text)) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        // repeated terms add up, but with diminishing returns
+        frequencies.forEach((token, tf) ->
+                weights.merge(token, fieldWeight * (1 + (float) Math.log(tf)), Float::sum));
+    }
+
+    static String[] tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase();
+        return Arrays.stream(normalized.split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * The documents holding a term, with the weight of the term in each of them.
+     */
+    private static class Postings {
+
+        private int[] docs = new int[4];
+        private float[] weights = new float[4];
+        private int size;
+
+        private void add(int docId, float weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = docId;
+            weights[size] = weight;
+            size++;
+        }
+
+        private void remove(int docId) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == docId) {
+                    // order does not matter, move the last posting in place of the removed one
+                    size--;
+                    docs[i] = docs[size];
+                    weights[i] = weights[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class Hit {
+
+        private final Product product;
+        private final float score;
+
+        private Hit(Product product, float score) {
+            this.product = product;
+            this.score = score;
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.redhat.coolstore.catalog.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+
+import io.jaegertracing.Span;
+import io.jaegertracing.reporters.Reporter;
+import io.jaegertracing.senders.Sender;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Span reporter decoupling the request threads from the tracing backend.
+ * <p/>
+ * Finished spans are put in a bounded queue without ever blocking: when the queue is full, the span is dropped and
+ * counted. A single background thread takes the spans from the queue and sends them in batches of
+ * {@code batchSize}, or every {@code flushInterval} milliseconds when fewer spans are waiting. Spans of a batch
+ * which can not be sent are dropped and counted as well, so that a slow or failing collector costs spans, not
+ * latency nor memory.
+ */
+public class BoundedSpanReporter implements Reporter {
+
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 10000;
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    public static final int DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    private final Sender sender;
+
+    private final int batchSize;
+
+    private final long flushInterval;
+
+    private final BlockingQueue<Span> queue;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private final LongAdder reported;
+
+    private final LongAdder droppedQueueFull;
+
+    private final LongAdder droppedSendFailed;
+
+    Logger log = LoggerFactory.getLogger(BoundedSpanReporter.class);
+
+    public BoundedSpanReporter(Sender sender, int maxQueueSize, int batchSize, long flushInterval,
+            CatalogMetrics metrics) {
+        this.sender = sender;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.queue = new ArrayBlockingQueue<>(maxQueueSize);
+
+        this.reported = metrics.counter("catalog_tracing_spans_reported_total", "Spans sent to the tracing backend", "");
+        String dropped = "catalog_tracing_spans_dropped_total";
+        String droppedHelp = "Spans dropped by the span reporter by reason";
+        this.droppedQueueFull = metrics.counter(dropped, droppedHelp, CatalogMetrics.label("reason", "queue_full"));
+        this.droppedSendFailed = metrics.counter(dropped, droppedHelp, CatalogMetrics.label("reason", "send_failed"));
+        metrics.gauge("catalog_tracing_queue_size", "Spans waiting to be sent to the tracing backend", "",
+                () -> queue.size());
+
+        this.thread = new Thread(this::run, "catalog-span-reporter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void report(Span span) {
+        if (!running || !queue.offer(span)) {
+            droppedQueueFull.increment();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sender.close();
+        } catch (Exception e) {
+            log.warn("Failed to close the span sender: " + e.getMessage());
+        }
+    }
+
+    private void run() {
+        List<Span> batch = new ArrayList<>(batchSize);
+        long nextFlush = System.currentTimeMillis() + flushInterval;
+        while (running) {
+            try {
+                Span span = queue.poll(Math.max(0, nextFlush - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (span != null) {
+                    batch.add(span);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // closing, the pending spans are sent below
+                break;
+            }
+            if (batch.size() >= batchSize || System.currentTimeMillis() >= nextFlush) {
+                send(batch);
+                nextFlush = System.currentTimeMillis() + flushInterval;
+            }
+        }
+        // send what is left, close() does not wait for more than CLOSE_TIMEOUT. The interrupt of close() may have
+        // come while sending, it is cleared so that it does not fail the sender.
+        Thread.interrupted();
+        send(batch);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            send(batch);
+        }
+    }
+
+    private void send(List<Span> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            for (Span span : batch) {
+                sender.append(span);
+            }
+            sender.flush();
+            reported.add(batch.size());
+        } catch (Exception e) {
+            droppedSendFailed.add(batch.size());
+            log.warn("Failed to send " + batch.size() + " spans: " + e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+}
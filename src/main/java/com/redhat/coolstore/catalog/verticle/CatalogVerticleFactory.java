@@ -0,0 +1,56 @@
+package com.redhat.coolstore.catalog.verticle;
+
+import com.redhat.coolstore.catalog.api.ApiVerticle;
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+import com.redhat.coolstore.catalog.verticle.service.CatalogVerticle;
+
+import io.vertx.core.Verticle;
+import io.vertx.core.Vertx;
+import io.vertx.core.spi.VerticleFactory;
+
+/**
+ * Creates the verticles of the catalog service, so that they can be deployed by name with several instances.
+ * Each {@link ApiVerticle} instance gets its own proxy to the catalog service.
+ */
+public class CatalogVerticleFactory implements VerticleFactory {
+
+    public static final String PREFIX = "catalog";
+
+    public static final String API_VERTICLE = PREFIX + ":" + ApiVerticle.class.getName();
+
+    public static final String CATALOG_VERTICLE = PREFIX + ":" + CatalogVerticle.class.getName();
+
+    private final boolean localProxy;
+
+    private Vertx vertx;
+
+    /**
+     * @param localProxy whether the {@link ApiVerticle} instances call the service through the local proxy, which
+     *                   skips the JSON conversion of the event bus proxy but only reaches services in the same JVM
+     */
+    public CatalogVerticleFactory(boolean localProxy) {
+        this.localProxy = localProxy;
+    }
+
+    @Override
+    public void init(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    @Override
+    public String prefix() {
+        return PREFIX;
+    }
+
+    @Override
+    public Verticle createVerticle(String verticleName, ClassLoader classLoader) throws Exception {
+        String className = VerticleFactory.removePrefix(verticleName);
+        if (ApiVerticle.class.getName().equals(className)) {
+            return new ApiVerticle(localProxy ? CatalogService.createLocalProxy(vertx) : CatalogService.createProxy(vertx));
+        } else if (CatalogVerticle.class.getName().equals(className)) {
+            return new CatalogVerticle();
+        }
+        throw new IllegalArgumentException("Unknown verticle: " + verticleName);
+    }
+
+}
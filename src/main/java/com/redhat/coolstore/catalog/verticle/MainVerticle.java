@@ -1,9 +1,21 @@
 package com.redhat.coolstore.catalog.verticle;
 
-import com.redhat.coolstore.catalog.api.ApiVerticle;
-import com.redhat.coolstore.catalog.verticle.service.CatalogService;
-import com.redhat.coolstore.catalog.verticle.service.CatalogVerticle;
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+import com.redhat.coolstore.catalog.tracing.BoundedSpanReporter;
+import com.redhat.coolstore.catalog.verticle.service.LocalMessageCodec;
 import io.jaegertracing.Configuration;
+import io.jaegertracing.Tracer;
+import io.jaegertracing.metrics.Metrics;
+import io.jaegertracing.metrics.NoopMetricsFactory;
+import io.jaegertracing.reporters.CompositeReporter;
+import io.jaegertracing.reporters.LoggingReporter;
+import io.jaegertracing.reporters.Reporter;
+import io.jaegertracing.samplers.ConstSampler;
+import io.jaegertracing.samplers.HttpSamplingManager;
+import io.jaegertracing.samplers.ProbabilisticSampler;
+import io.jaegertracing.samplers.RateLimitingSampler;
+import io.jaegertracing.samplers.RemoteControlledSampler;
+import io.jaegertracing.samplers.Sampler;
 import io.opentracing.util.GlobalTracer;
 import io.vertx.config.ConfigRetriever;
 import io.vertx.config.ConfigRetrieverOptions;
@@ -23,6 +35,12 @@ public class MainVerticle extends AbstractVerticle {
 
     Logger log = LoggerFactory.getLogger(MainVerticle.class);
 
+    private CatalogVerticleFactory verticleFactory;
+
+    private boolean localCodecRegistered;
+
+    private Tracer tracer;
+
     @Override
     public void start(Future<Void> startFuture) throws Exception {
     	
@@ -72,11 +90,30 @@ public class MainVerticle extends AbstractVerticle {
         Future<String> apiVerticleFuture = Future.future();
         Future<String> catalogVerticleFuture = Future.future();
 
-        CatalogService catalogService = CatalogService.createProxy(vertx);
-        DeploymentOptions options = new DeploymentOptions();
-        options.setConfig(config);
-        vertx.deployVerticle(new CatalogVerticle(), options, catalogVerticleFuture.completer());
-        vertx.deployVerticle(new ApiVerticle(catalogService), options, apiVerticleFuture.completer());
+        // the caches and indexes are per verticle instance, so the memory they use grows with the number of instances:
+        // each CatalogVerticle holds up to catalog.cache.max-size cached and catalog.mongo.stale.max-size last known
+        // products, each ApiVerticle up to catalog.http.response-cache.max-size responses and its search and price
+        // indexes over the whole catalog
+        int cores = Runtime.getRuntime().availableProcessors();
+        DeploymentOptions catalogOptions = new DeploymentOptions()
+                .setConfig(config)
+                .setInstances(config.getInteger("catalog.service.instances", cores));
+        DeploymentOptions apiOptions = new DeploymentOptions()
+                .setConfig(config)
+                .setInstances(config.getInteger("catalog.api.instances", cores));
+        log.info("Deploying " + catalogOptions.getInstances() + " CatalogVerticle and "
+                + apiOptions.getInstances() + " ApiVerticle instances.");
+
+        // the local proxy passes objects by reference, which is only possible when the service runs in this JVM
+        boolean localProxy = config.getBoolean("catalog.service.local-proxy", !vertx.isClustered());
+        if (localProxy) {
+            vertx.eventBus().registerCodec(new LocalMessageCodec());
+            localCodecRegistered = true;
+        }
+        verticleFactory = new CatalogVerticleFactory(localProxy);
+        vertx.registerVerticleFactory(verticleFactory);
+        vertx.deployVerticle(CatalogVerticleFactory.CATALOG_VERTICLE, catalogOptions, catalogVerticleFuture.completer());
+        vertx.deployVerticle(CatalogVerticleFactory.API_VERTICLE, apiOptions, apiVerticleFuture.completer());
 
         CompositeFuture.all(apiVerticleFuture, catalogVerticleFuture).setHandler(ar -> {
             if (ar.succeeded()) {
@@ -92,6 +129,16 @@ public class MainVerticle extends AbstractVerticle {
 
     @Override
     public void stop(Future<Void> stopFuture) throws Exception {
+        if (verticleFactory != null && vertx.verticleFactories().contains(verticleFactory)) {
+            vertx.unregisterVerticleFactory(verticleFactory);
+        }
+        if (localCodecRegistered) {
+            vertx.eventBus().unregisterCodec(LocalMessageCodec.NAME);
+        }
+        if (tracer != null) {
+            // sends the spans still queued
+            tracer.close();
+        }
         super.stop(stopFuture);
     }
 
@@ -102,20 +149,57 @@ public class MainVerticle extends AbstractVerticle {
             return;
         }
 
-        Configuration configuration = new Configuration(serviceName)
-                .withSampler(new Configuration.SamplerConfiguration()
-                        .withType(config.getString("sampler-type"))
-                        .withParam(getPropertyAsNumber(config, "sampler-param"))
-                        .withManagerHostPort(config.getString("sampler-manager-host-port")))
-                .withReporter(new Configuration.ReporterConfiguration()
-                        .withLogSpans(config.getBoolean("reporter-log-spans"))
-                        .withFlushInterval(config.getInteger("reporter-flush-interval"))
-                        .withMaxQueueSize(config.getInteger("reporter-flush-interval"))
-                        .withSender(new Configuration.SenderConfiguration()
-                        		.withEndpoint(config.getString("collector-endpoint")) ));
-                                //.withAgentHost(config.getString("agent-host"))
-                                //.withAgentPort(config.getInteger("agent-port"))));
-        GlobalTracer.register(configuration.getTracer());
+        Configuration.SenderConfiguration senderConfiguration = new Configuration.SenderConfiguration()
+                .withEndpoint(config.getString("collector-endpoint"));
+                //.withAgentHost(config.getString("agent-host"))
+                //.withAgentPort(config.getInteger("agent-port"));
+
+        // spans are reported from a bounded queue, so that a slow collector never blocks the event loops
+        Reporter reporter = new BoundedSpanReporter(senderConfiguration.getSender(),
+                config.getInteger("reporter-max-queue-size", BoundedSpanReporter.DEFAULT_MAX_QUEUE_SIZE),
+                config.getInteger("reporter-batch-size", BoundedSpanReporter.DEFAULT_BATCH_SIZE),
+                config.getInteger("reporter-flush-interval", BoundedSpanReporter.DEFAULT_FLUSH_INTERVAL),
+                CatalogMetrics.get(vertx));
+        if (config.getBoolean("reporter-log-spans", false)) {
+            reporter = new CompositeReporter(reporter, new LoggingReporter());
+        }
+
+        Metrics metrics = new Metrics(new NoopMetricsFactory());
+        tracer = new Tracer.Builder(serviceName)
+                .withSampler(createSampler(config, serviceName, metrics))
+                .withReporter(reporter)
+                .withMetrics(metrics)
+                .build();
+        GlobalTracer.register(tracer);
+    }
+
+    /**
+     * Builds the sampler configured by {@code sampler-type} and {@code sampler-param}, with the same defaults as the
+     * Jaeger configuration: a remote controlled sampler starting with a probabilistic sampling of 0.1%.
+     */
+    private Sampler createSampler(JsonObject config, String serviceName, Metrics metrics) {
+        String type = config.getString("sampler-type", RemoteControlledSampler.TYPE);
+        Number param = getPropertyAsNumber(config, "sampler-param");
+        if (param == null) {
+            param = ProbabilisticSampler.DEFAULT_SAMPLING_PROBABILITY;
+        }
+        switch (type) {
+            case ConstSampler.TYPE:
+                return new ConstSampler(param.intValue() != 0);
+            case ProbabilisticSampler.TYPE:
+                return new ProbabilisticSampler(param.doubleValue());
+            case RateLimitingSampler.TYPE:
+                return new RateLimitingSampler(param.doubleValue());
+            case RemoteControlledSampler.TYPE:
+                return new RemoteControlledSampler.Builder(serviceName)
+                        .withSamplingManager(new HttpSamplingManager(config.getString("sampler-manager-host-port",
+                                HttpSamplingManager.DEFAULT_HOST_PORT)))
+                        .withInitialSampler(new ProbabilisticSampler(param.doubleValue()))
+                        .withMetrics(metrics)
+                        .build();
+            default:
+                throw new IllegalStateException("Invalid sampler type " + type);
+        }
     }
 
     private Number getPropertyAsNumber(JsonObject json, String key) {
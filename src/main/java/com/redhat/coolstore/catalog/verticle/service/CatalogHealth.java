@@ -0,0 +1,52 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * State of the MongoDB access of the catalog service instances of a Vert.x instance. While a {@link CircuitBreaker}
+ * is open, its service answers reads from the last known products, and the API verticles mark their responses as
+ * possibly stale.
+ */
+public class CatalogHealth implements Shareable {
+
+    private static final String MAP_NAME = "catalog.health";
+
+    private final AtomicInteger openBreakers = new AtomicInteger();
+
+    public static CatalogHealth get(Vertx vertx) {
+        LocalMap<String, CatalogHealth> map = vertx.sharedData().getLocalMap(MAP_NAME);
+        CatalogHealth health = map.get(MAP_NAME);
+        if (health == null) {
+            CatalogHealth created = new CatalogHealth();
+            health = map.putIfAbsent(MAP_NAME, created);
+            if (health == null) {
+                health = created;
+            }
+        }
+        return health;
+    }
+
+    void breakerOpened() {
+        openBreakers.incrementAndGet();
+    }
+
+    void breakerClosed() {
+        openBreakers.decrementAndGet();
+    }
+
+    public int openBreakers() {
+        return openBreakers.get();
+    }
+
+    /**
+     * Returns true when reads may be answered from the last known products rather than from the database.
+     */
+    public boolean servingStale() {
+        return openBreakers.get() > 0;
+    }
+
+}
@@ -16,20 +16,52 @@ public interface CatalogService {
 
     final static String ADDRESS = "catalog-service";
 
-    static CatalogService create(Vertx vertx, JsonObject config, MongoClient client) {
-        return new CatalogServiceImpl(vertx, config, client);
+    final static String LOCAL_ADDRESS = "catalog-service.local";
+
+    final static String CHANGES_ADDRESS = "catalog-service.changes";
+
+    static CatalogService create(Vertx vertx, JsonObject config, MongoClient client, MongoClient readClient) {
+        return new CatalogServiceImpl(vertx, config, client, readClient);
     }
 
     static CatalogService createProxy(Vertx vertx) {
         return new CatalogServiceVertxEBProxy(vertx, ADDRESS);
     }
 
+    static CatalogService createLocalProxy(Vertx vertx) {
+        return new LocalCatalogServiceProxy(vertx);
+    }
+
     void getProducts(Handler<AsyncResult<List<Product>>> resulthandler);
 
     void getProduct(String itemId, Handler<AsyncResult<Product>> resulthandler);
 
+    /**
+     * Returns the products with only the given fields, among {@code itemId}, {@code name}, {@code desc} and
+     * {@code price}. The itemId is always included, unknown fields are ignored.
+     */
+    void getProductsWithFields(List<String> fields, Handler<AsyncResult<List<JsonObject>>> resulthandler);
+
+    /**
+     * Returns the product with only the given fields, as {@link #getProductsWithFields}, or null when there is no
+     * such product.
+     */
+    void getProductWithFields(String itemId, List<String> fields, Handler<AsyncResult<JsonObject>> resulthandler);
+
+    /**
+     * Returns at most {@code limit} products ordered by itemId, starting after the given itemId, or from the first
+     * one when null. Used to read the whole catalog page by page.
+     */
+    void getProductPage(String after, int limit, Handler<AsyncResult<List<JsonObject>>> resulthandler);
+
+    void getProductsByIds(List<String> itemIds, Handler<AsyncResult<List<Product>>> resulthandler);
+
     void addProduct(Product product, Handler<AsyncResult<String>> resulthandler);
 
+    void addProducts(List<Product> products, Handler<AsyncResult<JsonObject>> resulthandler);
+
+    void getChanges(long since, int limit, Handler<AsyncResult<JsonObject>> resulthandler);
+
     void ping(Handler<AsyncResult<String>> resultHandler);
 
 }
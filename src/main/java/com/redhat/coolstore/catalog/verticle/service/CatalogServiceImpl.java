@@ -1,35 +1,145 @@
 package com.redhat.coolstore.catalog.verticle.service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
+import com.mongodb.MongoBulkWriteException;
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+import com.redhat.coolstore.catalog.metrics.Histogram;
 import com.redhat.coolstore.catalog.model.Product;
 
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.FindOptions;
 import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
 
 public class CatalogServiceImpl implements CatalogService {
 
+    public static final int DEFAULT_BULK_BATCH_SIZE = 1000;
+
+    static final String COUNTERS = "counters";
+
+    static final String CATALOG_COUNTER = "catalog";
+
+    private static final JsonObject PRODUCT_FIELDS = new JsonObject()
+            .put("_id", 0)
+            .put("itemId", 1)
+            .put("name", 1)
+            .put("desc", 1)
+            .put("price", 1);
+
+    private static final JsonObject CHANGE_FIELDS = PRODUCT_FIELDS.copy()
+            .put("version", 1)
+            .put("modified", 1);
+
+    private Vertx vertx;
+
+    // writes, and the reads which must see the latest writes, go to the primary
     private MongoClient client;
 
-    public CatalogServiceImpl(Vertx vertx, JsonObject config, MongoClient client) {
+    private MongoClient readClient;
+
+    private MongoPool writePool;
+
+    private MongoPool readPool;
+
+    private ProductCache cache;
+
+    private int bulkBatchSize;
+
+    private CatalogVersion catalogVersion;
+
+    private ChangeLog changeLog;
+
+    private boolean changesFallback;
+
+    // documents not written through the service may have a generated _id, and are then looked up by itemId
+    private boolean itemIdFallback;
+
+    private long changesGracePeriod;
+
+    private CircuitBreaker breaker;
+
+    private LastKnownProducts lastKnown;
+
+    private MongoHealthProbe probe;
+
+    private LongAdder staleReads;
+
+    private Histogram findTimer;
+    private Histogram findOneTimer;
+    private Histogram saveTimer;
+    private Histogram bulkWriteTimer;
+    private Histogram counterTimer;
+
+    public CatalogServiceImpl(Vertx vertx, JsonObject config, MongoClient client, MongoClient readClient) {
+        this.vertx = vertx;
         this.client = client;
+        this.readClient = readClient;
+        this.writePool = MongoPool.get(vertx, config, MongoClientConfig.WRITE);
+        this.readPool = MongoPool.get(vertx, config, MongoClientConfig.READ);
+        this.bulkBatchSize = config.getInteger("catalog.bulk.batch-size", DEFAULT_BULK_BATCH_SIZE);
+        this.catalogVersion = CatalogVersion.get(vertx);
+        this.changeLog = new ChangeLog(config.getInteger("catalog.changes.log-size", ChangeLog.DEFAULT_MAX_SIZE));
+        this.changesFallback = config.getBoolean("catalog.changes.mongo-fallback", true);
+        this.itemIdFallback = config.getBoolean("catalog.mongo.itemid-fallback", true);
+        this.changesGracePeriod = config.getLong("catalog.changes.grace-period", ChangeLog.DEFAULT_GRACE_PERIOD);
+        this.breaker = CircuitBreaker.create(vertx, config);
+        this.lastKnown = new LastKnownProducts(config.getInteger("catalog.mongo.stale.max-size",
+                LastKnownProducts.DEFAULT_MAX_SIZE));
+        this.probe = MongoHealthProbe.create(vertx, config, client);
+
+        CatalogMetrics metrics = CatalogMetrics.get(vertx);
+        this.cache = ProductCache.create(config, metrics);
+        this.staleReads = metrics.counter("catalog_mongo_stale_reads_total",
+                "Reads answered from the last known products while the MongoDB circuit breaker is open", "");
+        this.findTimer = metrics.mongoOperationDuration("find");
+        this.findOneTimer = metrics.mongoOperationDuration("findOne");
+        this.saveTimer = metrics.mongoOperationDuration("save");
+        this.bulkWriteTimer = metrics.mongoOperationDuration("bulkWrite");
+        this.counterTimer = metrics.mongoOperationDuration("findAndModify");
     }
 
     @Override
     public void getProducts(Handler<AsyncResult<List<Product>>> resulthandler) {
+        if (cache != null) {
+            List<Product> cached = cache.getAll();
+            if (cached != null) {
+                resulthandler.handle(Future.succeededFuture(cached));
+                return;
+            }
+        }
+        long generation = cache != null ? cache.generation() : 0;
         JsonObject query = new JsonObject();
-        client.find("products", query, ar -> {
+        this.<List<JsonObject>>mongo(readPool, h -> readClient.findWithOptions("products", query,
+                new FindOptions().setFields(PRODUCT_FIELDS), timed(findTimer, h)), ar -> {
             if (ar.succeeded()) {
                 List<Product> products = ar.result().stream()
                                            .map(json -> new Product(json))
                                            .collect(Collectors.toList());
+                if (cache != null) {
+                    cache.loadAll(products, generation);
+                }
+                lastKnown.putAll(products);
                 resulthandler.handle(Future.succeededFuture(products));
+            } else if (rejected(ar) && lastKnown.complete()) {
+                staleReads.increment();
+                resulthandler.handle(Future.succeededFuture(lastKnown.all()));
             } else {
                 resulthandler.handle(Future.failedFuture(ar.cause()));
             }
@@ -38,14 +148,195 @@ public class CatalogServiceImpl implements CatalogService {
 
     @Override
     public void getProduct(String itemId, Handler<AsyncResult<Product>> resulthandler) {
-        JsonObject query = new JsonObject().put("itemId", itemId);
-        client.find("products", query, ar -> {
+        if (cache != null) {
+            Product cached = cache.get(itemId);
+            if (cached != null) {
+                resulthandler.handle(Future.succeededFuture(cached));
+                return;
+            }
+        }
+        long generation = cache != null ? cache.generation() : 0;
+        JsonObject query = new JsonObject().put("_id", itemId);
+        this.<JsonObject>mongo(readPool, h -> readClient.findOne("products", query, PRODUCT_FIELDS,
+                timed(findOneTimer, h)), ar -> {
+            if (ar.failed()) {
+                lastKnownProduct(itemId, ar.cause(), resulthandler);
+            } else if (ar.result() != null) {
+                resulthandler.handle(Future.succeededFuture(loaded(ar.result(), generation)));
+            } else if (!itemIdFallback) {
+                resulthandler.handle(Future.succeededFuture(null));
+            } else {
+                JsonObject byItemId = new JsonObject().put("itemId", itemId);
+                this.<JsonObject>mongo(readPool, h -> readClient.findOne("products", byItemId, PRODUCT_FIELDS,
+                        timed(findOneTimer, h)), ar1 -> {
+                    if (ar1.failed()) {
+                        lastKnownProduct(itemId, ar1.cause(), resulthandler);
+                    } else if (ar1.result() != null) {
+                        resulthandler.handle(Future.succeededFuture(loaded(ar1.result(), generation)));
+                    } else {
+                        resulthandler.handle(Future.succeededFuture(null));
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void getProductsWithFields(List<String> fields, Handler<AsyncResult<List<JsonObject>>> resulthandler) {
+        if (cache != null) {
+            List<Product> cached = cache.getAll();
+            if (cached != null) {
+                resulthandler.handle(Future.succeededFuture(project(cached, fields)));
+                return;
+            }
+        }
+        // partial documents are not cached
+        JsonObject projection = projection(fields);
+        this.<List<JsonObject>>mongo(readPool, h -> readClient.findWithOptions("products", new JsonObject(),
+                new FindOptions().setFields(projection), timed(findTimer, h)), ar -> {
             if (ar.succeeded()) {
-                Optional<JsonObject> result = ar.result().stream().findFirst();
-                if (result.isPresent()) {
-                    resulthandler.handle(Future.succeededFuture(new Product(result.get())));
+                resulthandler.handle(Future.succeededFuture(ar.result()));
+            } else if (rejected(ar) && lastKnown.complete()) {
+                staleReads.increment();
+                resulthandler.handle(Future.succeededFuture(project(lastKnown.all(), fields)));
+            } else {
+                resulthandler.handle(Future.failedFuture(ar.cause()));
+            }
+        });
+    }
+
+    @Override
+    public void getProductPage(String after, int limit, Handler<AsyncResult<List<JsonObject>>> resulthandler) {
+        JsonObject query = new JsonObject();
+        if (after != null) {
+            query.put("itemId", new JsonObject().put("$gt", after));
+        }
+        FindOptions options = new FindOptions()
+                .setFields(PRODUCT_FIELDS)
+                .setSort(new JsonObject().put("itemId", 1))
+                .setLimit(limit);
+        this.<List<JsonObject>>mongo(readPool, h -> readClient.findWithOptions("products", query, options,
+                timed(findTimer, h)), resulthandler);
+    }
+
+    @Override
+    public void getProductWithFields(String itemId, List<String> fields,
+            Handler<AsyncResult<JsonObject>> resulthandler) {
+        if (cache != null) {
+            Product cached = cache.get(itemId);
+            if (cached != null) {
+                resulthandler.handle(Future.succeededFuture(cached.toJson(fields)));
+                return;
+            }
+        }
+        JsonObject projection = projection(fields);
+        Handler<AsyncResult<Product>> lastKnownHandler = ar -> {
+            if (ar.succeeded()) {
+                resulthandler.handle(Future.succeededFuture(ar.result() != null ? ar.result().toJson(fields) : null));
+            } else {
+                resulthandler.handle(Future.failedFuture(ar.cause()));
+            }
+        };
+        JsonObject query = new JsonObject().put("_id", itemId);
+        this.<JsonObject>mongo(readPool, h -> readClient.findOne("products", query, projection,
+                timed(findOneTimer, h)), ar -> {
+            if (ar.failed()) {
+                lastKnownProduct(itemId, ar.cause(), lastKnownHandler);
+            } else if (ar.result() != null || !itemIdFallback) {
+                resulthandler.handle(Future.succeededFuture(ar.result()));
+            } else {
+                JsonObject byItemId = new JsonObject().put("itemId", itemId);
+                this.<JsonObject>mongo(readPool, h -> readClient.findOne("products", byItemId, projection,
+                        timed(findOneTimer, h)), ar1 -> {
+                    if (ar1.failed()) {
+                        lastKnownProduct(itemId, ar1.cause(), lastKnownHandler);
+                    } else {
+                        resulthandler.handle(Future.succeededFuture(ar1.result()));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns the projection of the given product fields. Unknown fields are ignored, so that they can not be used
+     * to read the other fields of the documents.
+     */
+    private static JsonObject projection(List<String> fields) {
+        JsonObject projection = new JsonObject()
+                .put("_id", 0)
+                .put("itemId", 1);
+        fields.stream()
+                .filter(field -> PRODUCT_FIELDS.getInteger(field, 0) == 1)
+                .forEach(field -> projection.put(field, 1));
+        return projection;
+    }
+
+    private static List<JsonObject> project(List<Product> products, List<String> fields) {
+        return products.stream()
+                .map(product -> product.toJson(fields))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Answers a product read from the last known products when the circuit breaker is open, fails it otherwise.
+     */
+    private void lastKnownProduct(String itemId, Throwable cause, Handler<AsyncResult<Product>> resulthandler) {
+        Product product = cause instanceof CircuitBreaker.OpenException ? lastKnown.get(itemId) : null;
+        if (product != null || cause instanceof CircuitBreaker.OpenException && lastKnown.complete()) {
+            staleReads.increment();
+            resulthandler.handle(Future.succeededFuture(product));
+        } else {
+            resulthandler.handle(Future.failedFuture(cause));
+        }
+    }
+
+    /**
+     * Returns the products with the given itemIds, in the order of the given list. Unknown itemIds are skipped.
+     * Products which are not cached are fetched with a single query.
+     */
+    @Override
+    public void getProductsByIds(List<String> itemIds, Handler<AsyncResult<List<Product>>> resulthandler) {
+        Map<String, Product> found = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String itemId : itemIds) {
+            Product cached = cache != null ? cache.get(itemId) : null;
+            if (cached != null) {
+                found.put(itemId, cached);
+            } else {
+                missing.add(itemId);
+            }
+        }
+        if (missing.isEmpty()) {
+            resulthandler.handle(Future.succeededFuture(inOrder(itemIds, found)));
+            return;
+        }
+        long generation = cache != null ? cache.generation() : 0;
+        JsonObject in = new JsonObject().put("$in", new JsonArray(new ArrayList<>(missing)));
+        JsonObject query = !itemIdFallback ? new JsonObject().put("_id", in) : new JsonObject().put("$or",
+                new JsonArray()
+                        .add(new JsonObject().put("_id", in))
+                        .add(new JsonObject().put("itemId", in.copy())));
+        this.<List<JsonObject>>mongo(readPool, h -> readClient.findWithOptions("products", query,
+                new FindOptions().setFields(PRODUCT_FIELDS), timed(findTimer, h)), ar -> {
+            if (ar.succeeded()) {
+                ar.result().forEach(document -> {
+                    Product product = loaded(document, generation);
+                    found.put(product.getItemId(), product);
+                });
+                resulthandler.handle(Future.succeededFuture(inOrder(itemIds, found)));
+            } else if (rejected(ar)) {
+                missing.forEach(itemId -> {
+                    Product product = lastKnown.get(itemId);
+                    if (product != null) {
+                        found.put(itemId, product);
+                    }
+                });
+                if (lastKnown.complete() || found.keySet().containsAll(missing)) {
+                    staleReads.increment();
+                    resulthandler.handle(Future.succeededFuture(inOrder(itemIds, found)));
                 } else {
-                    resulthandler.handle(Future.succeededFuture(null));
+                    resulthandler.handle(Future.failedFuture(ar.cause()));
                 }
             } else {
                 resulthandler.handle(Future.failedFuture(ar.cause()));
@@ -53,19 +344,387 @@ public class CatalogServiceImpl implements CatalogService {
         });
     }
 
+    private List<Product> inOrder(List<String> itemIds, Map<String, Product> products) {
+        return itemIds.stream()
+                .map(products::get)
+                .filter(p -> p != null)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public void addProduct(Product product, Handler<AsyncResult<String>> resulthandler) {
-        client.save("products", toDocument(product), resulthandler);
+        allocateVersions(1, ar0 -> {
+            if (ar0.failed()) {
+                resulthandler.handle(Future.failedFuture(ar0.cause()));
+                return;
+            }
+            long version = ar0.result();
+            long timestamp = System.currentTimeMillis();
+            this.<String>mongo(writePool, h -> client.save("products", toDocument(product, version, timestamp),
+                    timed(saveTimer, h)), ar -> {
+                if (cache != null) {
+                    if (ar.succeeded()) {
+                        cache.put(product);
+                    } else {
+                        // the write may or may not have been applied
+                        cache.invalidate(product.getItemId());
+                    }
+                }
+                if (ar.succeeded()) {
+                    lastKnown.put(product);
+                    publishChange(product, version, timestamp);
+                }
+                resulthandler.handle(ar);
+            });
+        });
     }
 
+    /**
+     * Upserts the products with unordered bulk writes of at most {@code catalog.bulk.batch-size} operations.
+     * The result holds the number of products written and failed, and a result per product, in the order of the
+     * given list.
+     */
+    @Override
+    public void addProducts(List<Product> products, Handler<AsyncResult<JsonObject>> resulthandler) {
+        JsonObject result = new JsonObject()
+                .put("succeeded", 0)
+                .put("failed", 0)
+                .put("results", new JsonArray());
+        writeBatch(products, 0, result, resulthandler);
+    }
+
+    private void writeBatch(List<Product> products, int from, JsonObject result,
+            Handler<AsyncResult<JsonObject>> resulthandler) {
+        if (from >= products.size()) {
+            resulthandler.handle(Future.succeededFuture(result));
+            return;
+        }
+        List<Product> batch = products.subList(from, Math.min(from + bulkBatchSize, products.size()));
+        allocateVersions(batch.size(), ar0 -> {
+            if (ar0.failed()) {
+                resulthandler.handle(Future.failedFuture(ar0.cause()));
+                return;
+            }
+            long firstVersion = ar0.result() - batch.size() + 1;
+            long timestamp = System.currentTimeMillis();
+            bulkWrite(products, from, batch, firstVersion, timestamp, result, resulthandler);
+        });
+    }
+
+    private void bulkWrite(List<Product> products, int from, List<Product> batch, long firstVersion, long timestamp,
+            JsonObject result, Handler<AsyncResult<JsonObject>> resulthandler) {
+        List<BulkOperation> operations = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Product p = batch.get(i);
+            operations.add(BulkOperation.createReplace(new JsonObject().put("_id", p.getItemId()),
+                    toDocument(p, firstVersion + i, timestamp), true));
+        }
+        this.<MongoClientBulkWriteResult>mongo(writePool, h -> client.bulkWriteWithOptions("products", operations,
+                new BulkWriteOptions().setOrdered(false), timed(bulkWriteTimer, h)), ar -> {
+            Map<Integer, String> errors = new HashMap<>();
+            if (ar.failed()) {
+                if (ar.cause() instanceof MongoBulkWriteException) {
+                    ((MongoBulkWriteException) ar.cause()).getWriteErrors()
+                            .forEach(e -> errors.put(e.getIndex(), e.getMessage()));
+                } else {
+                    for (int i = 0; i < batch.size(); i++) {
+                        errors.put(i, ar.cause().getMessage());
+                    }
+                }
+            }
+            JsonArray results = result.getJsonArray("results");
+            for (int i = 0; i < batch.size(); i++) {
+                Product product = batch.get(i);
+                JsonObject itemResult = new JsonObject().put("itemId", product.getItemId());
+                String error = errors.get(i);
+                if (error == null) {
+                    results.add(itemResult.put("status", "ok"));
+                    if (cache != null) {
+                        cache.put(product);
+                    }
+                    lastKnown.put(product);
+                    publishChange(product, firstVersion + i, timestamp);
+                } else {
+                    results.add(itemResult.put("status", "error").put("error", error));
+                    if (cache != null) {
+                        cache.invalidate(product.getItemId());
+                    }
+                }
+            }
+            result.put("succeeded", result.getInteger("succeeded") + batch.size() - errors.size());
+            result.put("failed", result.getInteger("failed") + errors.size());
+            writeBatch(products, from + batch.size(), result, resulthandler);
+        });
+    }
+
+    /**
+     * Returns the changes after the given version of the catalog, oldest first. The result holds the changes, the
+     * version to ask the next changes from, and whether more changes are available. When the changes can not be
+     * found anymore, the result only holds {@code resync: true} and the current version of the catalog, and the
+     * client has to reload the whole catalog.
+     * <p/>
+     * Recent changes are served from the in-memory change log, as long as it holds all of them. Older ones, and the
+     * ones written by the other instances of the service, are read from the database, where only the last change of
+     * each product is kept.
+     */
+    @Override
+    public void getChanges(long since, int limit, Handler<AsyncResult<JsonObject>> resulthandler) {
+        if (since <= catalogVersion.current()) {
+            changesSince(since, limit, resulthandler);
+            return;
+        }
+        // either a change this instance has not heard of yet, or a version from before the counter was reset
+        readVersion(ar -> {
+            if (ar.failed()) {
+                resulthandler.handle(Future.failedFuture(ar.cause()));
+            } else if (since > ar.result()) {
+                resulthandler.handle(Future.succeededFuture(resync(ar.result())));
+            } else {
+                changesSince(since, limit, resulthandler);
+            }
+        });
+    }
+
+    private void changesSince(long since, int limit, Handler<AsyncResult<JsonObject>> resulthandler) {
+        List<JsonObject> logged = changeLog.since(since, limit, catalogVersion.current());
+        if (logged != null) {
+            resulthandler.handle(Future.succeededFuture(changes(since, limit, logged)));
+            return;
+        }
+        if (!changesFallback) {
+            resulthandler.handle(Future.succeededFuture(resync(catalogVersion.current())));
+            return;
+        }
+        JsonObject query = new JsonObject().put("version", new JsonObject().put("$gt", since));
+        FindOptions options = new FindOptions()
+                .setFields(CHANGE_FIELDS)
+                .setSort(new JsonObject().put("version", 1))
+                .setLimit(limit);
+        this.<List<JsonObject>>mongo(writePool, h -> client.findWithOptions("products", query, options,
+                timed(findTimer, h)), ar -> {
+            if (ar.succeeded()) {
+                List<JsonObject> stored = ar.result().stream()
+                        .map(document -> change(new Product(document), document.getLong("version"),
+                                document.getLong("modified", 0L)))
+                        .collect(Collectors.toList());
+                resulthandler.handle(Future.succeededFuture(changes(since, limit, stored)));
+            } else {
+                resulthandler.handle(Future.failedFuture(ar.cause()));
+            }
+        });
+    }
+
+    private JsonObject changes(long since, int limit, List<JsonObject> changes) {
+        return new JsonObject()
+                .put("resync", false)
+                .put("version", ChangeLog.cursor(since, changes, System.currentTimeMillis(), changesGracePeriod))
+                .put("more", changes.size() >= limit)
+                .put("changes", new JsonArray(changes));
+    }
+
+    private JsonObject resync(long version) {
+        return new JsonObject()
+                .put("resync", true)
+                .put("version", version);
+    }
+
+    /**
+     * Reads the current version of the catalog and the time of the last write from the database, and starts the
+     * change log at this version.
+     */
+    void readVersion(Handler<AsyncResult<Long>> resulthandler) {
+        JsonObject query = new JsonObject().put("_id", CATALOG_COUNTER);
+        this.<JsonObject>mongo(writePool, h -> client.findOne(COUNTERS, query, null, timed(findOneTimer, h)),
+                ar -> {
+            if (ar.succeeded()) {
+                long version = ar.result() != null ? ar.result().getLong("version", 0L) : 0L;
+                long modified = ar.result() != null ? ar.result().getLong("modified", 0L) : 0L;
+                catalogVersion.advance(version, modified);
+                changeLog.start(version);
+                resulthandler.handle(Future.succeededFuture(version));
+            } else {
+                resulthandler.handle(Future.failedFuture(ar.cause()));
+            }
+        });
+    }
+
+    /**
+     * Allocates a range of consecutive catalog versions, and returns the last one. The time of the allocation is
+     * recorded with the counter as the modification time of the catalog.
+     */
+    private void allocateVersions(int count, Handler<AsyncResult<Long>> resulthandler) {
+        JsonObject command = new JsonObject()
+                .put("findAndModify", COUNTERS)
+                .put("query", new JsonObject().put("_id", CATALOG_COUNTER))
+                .put("update", new JsonObject()
+                        .put("$inc", new JsonObject().put("version", (long) count))
+                        .put("$max", new JsonObject().put("modified", System.currentTimeMillis())))
+                .put("new", true)
+                .put("upsert", true);
+        this.<JsonObject>mongo(writePool, h -> client.runCommand("findAndModify", command,
+                timed(counterTimer, h)), ar -> {
+            if (ar.succeeded()) {
+                resulthandler.handle(Future.succeededFuture(ar.result().getJsonObject("value").getLong("version")));
+            } else {
+                resulthandler.handle(Future.failedFuture(ar.cause()));
+            }
+        });
+    }
+
+    /**
+     * Answers the status of MongoDB as last seen by the health probe, {@code UP}, {@code DEGRADED} or {@code DOWN}.
+     * While MongoDB is down, reads are answered from the last known products, so the service only fails when it
+     * has none of them to answer with.
+     */
     @Override
     public void ping(Handler<AsyncResult<String>> resultHandler) {
-        resultHandler.handle(Future.succeededFuture("OK"));
+        if (probe.status() == MongoHealthProbe.Status.DOWN && lastKnown.size() == 0) {
+            resultHandler.handle(Future.failedFuture("MongoDB is down: " + probe.toJson().getString("error")));
+        } else {
+            resultHandler.handle(Future.succeededFuture(probe.status().name()));
+        }
+    }
+
+    /**
+     * Runs a MongoDB call once the pool of its client has a connection available, through the circuit breaker when
+     * enabled. An open breaker fails the call without waiting for a connection.
+     */
+    private <T> void mongo(MongoPool pool, Handler<Handler<AsyncResult<T>>> call,
+            Handler<AsyncResult<T>> resulthandler) {
+        if (breaker != null) {
+            breaker.execute(h -> pool.execute(call, h), resulthandler);
+        } else {
+            pool.execute(call, resulthandler);
+        }
+    }
+
+    private static boolean rejected(AsyncResult<?> ar) {
+        return ar.failed() && ar.cause() instanceof CircuitBreaker.OpenException;
+    }
+
+    private <T> Handler<AsyncResult<T>> timed(Histogram timer, Handler<AsyncResult<T>> handler) {
+        long start = System.nanoTime();
+        return ar -> {
+            timer.recordSince(start);
+            handler.handle(ar);
+        };
+    }
+
+    private Product loaded(JsonObject document, long generation) {
+        Product product = new Product(document);
+        if (cache != null) {
+            cache.load(product, generation);
+        }
+        lastKnown.put(product);
+        return product;
+    }
+
+    /**
+     * Publishes a product written to the database, with the version of the catalog allocated to the write.
+     */
+    private void publishChange(Product product, long version, long timestamp) {
+        vertx.eventBus().publish(CHANGES_ADDRESS, change(product, version, timestamp));
+    }
+
+    private JsonObject change(Product product, long version, long timestamp) {
+        return new JsonObject()
+                .put("version", version)
+                .put("timestamp", timestamp)
+                .put("product", product.toJson());
+    }
+
+    /**
+     * Applies a product change published by any instance of the service.
+     */
+    void onProductChange(JsonObject change) {
+        catalogVersion.advance(change.getLong("version", 0L), change.getLong("timestamp", 0L));
+        changeLog.add(change);
+        Product product = new Product(change.getJsonObject("product"));
+        if (cache != null) {
+            cache.put(product);
+        }
+        lastKnown.put(product);
+    }
+
+    /**
+     * Answers reads with the products of a snapshot until they are reconciled with the database: the products are
+     * loaded in the cache, when enabled, and kept as the last known products.
+     */
+    void warmUp(CatalogSnapshot snapshot) {
+        if (cache != null) {
+            cache.loadAll(new ArrayList<>(snapshot.products()), cache.generation());
+        }
+        lastKnown.putAll(snapshot.products());
+    }
+
+    /**
+     * Applies the products written to the database after a snapshot on top of it, and returns the number of
+     * products read from the database.
+     */
+    void reconcile(CatalogSnapshot snapshot, Handler<AsyncResult<Integer>> resulthandler) {
+        long generation = cache != null ? cache.generation() : 0;
+        JsonObject query = new JsonObject().put("version", new JsonObject().put("$gt", snapshot.version()));
+        this.<List<JsonObject>>mongo(writePool, h -> client.findWithOptions("products", query,
+                new FindOptions().setFields(PRODUCT_FIELDS), timed(findTimer, h)), ar -> {
+            if (ar.failed()) {
+                resulthandler.handle(Future.failedFuture(ar.cause()));
+                return;
+            }
+            Map<String, Product> products = new LinkedHashMap<>();
+            snapshot.products().forEach(product -> products.put(product.getItemId(), product));
+            ar.result().forEach(document -> {
+                Product product = new Product(document);
+                products.put(product.getItemId(), product);
+            });
+            List<Product> catalog = new ArrayList<>(products.values());
+            if (cache != null) {
+                cache.loadAll(catalog, generation);
+            }
+            lastKnown.putAll(catalog);
+            resulthandler.handle(Future.succeededFuture(ar.result().size()));
+        });
+    }
+
+    /**
+     * Reads the whole catalog from the database into a snapshot. The version of the snapshot is the last one with
+     * no earlier write possibly still in progress, as for the cursor of the changes.
+     */
+    void snapshot(Handler<AsyncResult<CatalogSnapshot>> resulthandler) {
+        long timestamp = System.currentTimeMillis();
+        this.<List<JsonObject>>mongo(writePool, h -> client.findWithOptions("products", new JsonObject(),
+                new FindOptions().setFields(CHANGE_FIELDS), timed(findTimer, h)), ar -> {
+            if (ar.failed()) {
+                resulthandler.handle(Future.failedFuture(ar.cause()));
+                return;
+            }
+            List<Product> products = new ArrayList<>(ar.result().size());
+            List<JsonObject> changes = new ArrayList<>(ar.result().size());
+            for (JsonObject document : ar.result()) {
+                products.add(new Product(document));
+                // documents not written through the service have no version
+                changes.add(new JsonObject()
+                        .put("version", document.getLong("version", 0L))
+                        .put("timestamp", document.getLong("modified", 0L)));
+            }
+            changes.sort(Comparator.comparing(change -> change.getLong("version")));
+            long version = ChangeLog.cursor(0, changes, timestamp, changesGracePeriod);
+            resulthandler.handle(Future.succeededFuture(new CatalogSnapshot(version, timestamp, products)));
+        });
+    }
+
+    ProductCache cache() {
+        return cache;
+    }
+
+    MongoHealthProbe probe() {
+        return probe;
     }
 
-    private JsonObject toDocument(Product product) {
+    private JsonObject toDocument(Product product, long version, long timestamp) {
         JsonObject document = product.toJson();
         document.put("_id", product.getItemId());
+        document.put("version", version);
+        document.put("modified", timestamp);
         return document;
     }
 
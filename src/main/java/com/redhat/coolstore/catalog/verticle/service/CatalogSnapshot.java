@@ -0,0 +1,187 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+/**
+ * Copy of the whole catalog at a version, stored in a local file so that a restarted service can answer before
+ * MongoDB does.
+ * <p/>
+ * The file holds a header, the products and a CRC32 of all that precedes it:
+ * <pre>
+ * int magic, int format, long version, long timestamp, int count
+ * count * (string itemId, string name, string desc, double price)
+ * long crc
+ * </pre>
+ * Strings are stored as their length in UTF-8 bytes, or -1 for null, followed by the bytes. Files are written to a
+ * temporary file first and then renamed, so that readers never see a partial snapshot.
+ * <p/>
+ * The snapshot holds every change up to its {@code version}: changes with a later version, or written while the
+ * snapshot was taken, are read from the database afterwards.
+ */
+public class CatalogSnapshot {
+
+    public static final long DEFAULT_INTERVAL = 300000;
+
+    public static final long DEFAULT_MAX_AGE = 86400000;
+
+    public static final String DEFAULT_PATH = "data/catalog.snapshot";
+
+    // "CATS"
+    private static final int MAGIC = 0x43415453;
+
+    private static final int FORMAT = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+    private final long version;
+
+    private final long timestamp;
+
+    private final List<Product> products;
+
+    public CatalogSnapshot(long version, long timestamp, List<Product> products) {
+        this.version = version;
+        this.timestamp = timestamp;
+        this.products = Collections.unmodifiableList(products);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the time the snapshot was taken.
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public List<Product> products() {
+        return products;
+    }
+
+    /**
+     * Reads the snapshot stored in a file, or returns null when there is no such file.
+     *
+     * @throws IOException when the file can not be read, or is not a valid snapshot
+     */
+    public static CatalogSnapshot read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + 8 || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Invalid catalog snapshot size: " + channel.size() + " bytes");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        ByteBuffer content = buffer.duplicate();
+        content.limit(buffer.capacity() - 8);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if (crc.getValue() != buffer.getLong(buffer.capacity() - 8)) {
+            throw new IOException("Corrupt catalog snapshot: checksum mismatch");
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a catalog snapshot");
+        }
+        int format = buffer.getInt();
+        if (format != FORMAT) {
+            throw new IOException("Unsupported catalog snapshot format: " + format);
+        }
+        long version = buffer.getLong();
+        long timestamp = buffer.getLong();
+        int count = buffer.getInt();
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setItemId(readString(buffer));
+            product.setName(readString(buffer));
+            product.setDesc(readString(buffer));
+            product.setPrice(buffer.getDouble());
+            products.add(product);
+        }
+        if (buffer.position() != buffer.capacity() - 8) {
+            throw new IOException("Corrupt catalog snapshot: unexpected data after the products");
+        }
+        return new CatalogSnapshot(version, timestamp, products);
+    }
+
+    /**
+     * Writes the snapshot to a file, replacing the previous snapshot at once.
+     */
+    public void write(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream os = Files.newOutputStream(temporary)) {
+                DataOutputStream out = new DataOutputStream(
+                        new CheckedOutputStream(new BufferedOutputStream(os, 65536), crc));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(version);
+                out.writeLong(timestamp);
+                out.writeInt(products.size());
+                for (Product product : products) {
+                    writeString(out, product.getItemId());
+                    writeString(out, product.getName());
+                    writeString(out, product.getDesc());
+                    out.writeDouble(product.getPrice());
+                }
+                // not part of the checksum
+                out.flush();
+                new DataOutputStream(os).writeLong(crc.getValue());
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt catalog snapshot: invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Latest version of the catalog known to the verticles of a Vert.x instance. Versions are allocated from a counter
+ * stored in MongoDB by every product written through the catalog service, and are carried by the change events
+ * published on {@link CatalogService#CHANGES_ADDRESS}. Change events only reach the verticles of the Vert.x instance
+ * the write was handled by, so the counter is also read every {@code catalog.version.refresh-interval} milliseconds.
+ * The counter also holds the time of the last write, so that all the instances report the same modification time.
+ */
+public class CatalogVersion implements Shareable {
+
+    public static final long DEFAULT_REFRESH_INTERVAL = 1000;
+
+    private static final String MAP_NAME = "catalog.version";
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong lastModified = new AtomicLong();
+
+    private final long started = System.currentTimeMillis();
+
+    public static CatalogVersion get(Vertx vertx) {
+        LocalMap<String, CatalogVersion> map = vertx.sharedData().getLocalMap(MAP_NAME);
+        CatalogVersion catalogVersion = map.get(MAP_NAME);
+        if (catalogVersion == null) {
+            CatalogVersion created = new CatalogVersion();
+            catalogVersion = map.putIfAbsent(MAP_NAME, created);
+            if (catalogVersion == null) {
+                catalogVersion = created;
+            }
+        }
+        return catalogVersion;
+    }
+
+    /**
+     * Records a version of the catalog, unless a later one is already known.
+     */
+    public void advance(long newVersion, long timestamp) {
+        version.accumulateAndGet(newVersion, Math::max);
+        lastModified.accumulateAndGet(timestamp, Math::max);
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * Returns the time of the last change, or the time the service started until the counter is read.
+     */
+    public long lastModified() {
+        long modified = lastModified.get();
+        return modified > 0 ? modified : started;
+    }
+
+}
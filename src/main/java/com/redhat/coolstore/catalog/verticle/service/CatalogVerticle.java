@@ -1,9 +1,17 @@
 package com.redhat.coolstore.catalog.verticle.service;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.UUID;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.mongo.MongoClient;
 import io.vertx.serviceproxy.ProxyHelper;
 
@@ -13,20 +21,171 @@ public class CatalogVerticle extends AbstractVerticle {
 
     private MongoClient client;
 
+    private MongoClient readClient;
+
+    private MongoHealthProbe probe;
+
+    private Path snapshotFile;
+
+    // identifies the instance writing the snapshots of this Vert.x instance
+    private final String snapshotWriter = UUID.randomUUID().toString();
+
+    private long snapshotVersion = -1;
+
+    Logger log = LoggerFactory.getLogger(CatalogVerticle.class);
+
     @Override
     public void start(Future<Void> startFuture) throws Exception {
 
-        client = MongoClient.createShared(vertx, config());
+        client = MongoClient.createShared(vertx, MongoClientConfig.write(config()), MongoClientConfig.WRITE);
+        readClient = MongoClient.createShared(vertx, MongoClientConfig.read(config()), MongoClientConfig.READ);
 
-        service = CatalogService.create(vertx, config(), client);
+        service = CatalogService.create(vertx, config(), client, readClient);
         ProxyHelper.registerService(CatalogService.class, vertx, service, CatalogService.ADDRESS);
+        LocalCatalogServiceProxy.registerService(vertx, service);
+        CatalogServiceImpl serviceImpl = (CatalogServiceImpl) service;
+
+        // keep the cache of this instance in line with the writes handled by the other instances
+        vertx.eventBus().<JsonObject>consumer(CatalogService.CHANGES_ADDRESS,
+                m -> serviceImpl.onProductChange(m.body()));
+        serviceImpl.readVersion(ar -> {
+            if (ar.failed()) {
+                // changes are read from the database until the version is known
+                log.warn("Failed to read the catalog version: " + ar.cause().getMessage());
+            }
+        });
+        // the versions written by the other instances of the service are only known from the counter
+        vertx.setPeriodic(config().getLong("catalog.version.refresh-interval", CatalogVersion.DEFAULT_REFRESH_INTERVAL),
+                l -> serviceImpl.readVersion(ar -> {
+                    if (ar.failed() && log.isDebugEnabled()) {
+                        log.debug("Failed to refresh the catalog version: " + ar.cause().getMessage());
+                    }
+                }));
+
+        probe = serviceImpl.probe();
+        probe.start();
+
+        long statsInterval = config().getLong("catalog.cache.stats-interval", 0L);
+        ProductCache cache = serviceImpl.cache();
+        if (cache != null && statsInterval > 0) {
+            vertx.setPeriodic(statsInterval, l -> log.info("Product cache stats: " + cache.stats().encode()));
+        }
+
+        // the service works without the indexes, only slower, so they are created in the background
+        ensureIndexes();
+
+        if (!config().getBoolean("catalog.snapshot.enabled", false)) {
+            startFuture.complete();
+            return;
+        }
+        snapshotFile = Paths.get(config().getString("catalog.snapshot.path", CatalogSnapshot.DEFAULT_PATH));
+        warmUp(serviceImpl, v -> startFuture.complete());
+        if (snapshots().putIfAbsent("writer", snapshotWriter) == null) {
+            vertx.setPeriodic(config().getLong("catalog.snapshot.interval", CatalogSnapshot.DEFAULT_INTERVAL),
+                    l -> writeSnapshot(serviceImpl));
+        }
+    }
+
+    private void ensureIndexes() {
+        if (!config().getBoolean("catalog.mongo.ensure-indexes", true)) {
+            return;
+        }
+
+        IndexManager indexManager = new IndexManager(client, "products")
+                .declare(new JsonObject().put("_id", 1))
+                .declare(new JsonObject().put("itemId", 1))
+                .declare(new JsonObject().put("name", 1))
+                .declare(new JsonObject().put("price", 1))
+                .declare(new JsonObject().put("version", 1));
+        indexManager.ensureIndexes(ar -> {
+            if (ar.failed()) {
+                log.error("Failed to create the indexes on the products collection", ar.cause());
+            }
+        });
+    }
+
+    /**
+     * Loads the snapshot of the catalog, when there is a recent enough one, and then reconciles it with the database
+     * in the background. The service starts without the snapshot when it can not be read.
+     */
+    private void warmUp(CatalogServiceImpl serviceImpl, Handler<Void> done) {
+        long maxAge = config().getLong("catalog.snapshot.max-age", CatalogSnapshot.DEFAULT_MAX_AGE);
+        vertx.<CatalogSnapshot>executeBlocking(f -> {
+            try {
+                f.complete(CatalogSnapshot.read(snapshotFile));
+            } catch (Exception e) {
+                f.fail(e);
+            }
+        }, false, ar -> {
+            CatalogSnapshot snapshot = ar.result();
+            if (ar.failed()) {
+                log.warn("Failed to read the catalog snapshot " + snapshotFile + ": " + ar.cause().getMessage());
+            } else if (snapshot == null) {
+                log.info("No catalog snapshot at " + snapshotFile);
+            } else if (System.currentTimeMillis() - snapshot.timestamp() > maxAge) {
+                log.info("Ignoring the catalog snapshot " + snapshotFile + ", older than " + maxAge + "ms");
+            } else {
+                serviceImpl.warmUp(snapshot);
+                log.info("Loaded " + snapshot.products().size() + " products from the catalog snapshot at version "
+                        + snapshot.version());
+                serviceImpl.reconcile(snapshot, ar1 -> {
+                    if (ar1.succeeded()) {
+                        log.info("Reconciled the catalog snapshot, " + ar1.result() + " products changed since");
+                    } else {
+                        // the snapshot is served until the cache expires, and kept as the last known products
+                        log.warn("Failed to reconcile the catalog snapshot: " + ar1.cause().getMessage());
+                    }
+                });
+            }
+            done.handle(null);
+        });
+    }
+
+    /**
+     * Writes a snapshot of the catalog, unless the catalog did not change since the last one.
+     */
+    private void writeSnapshot(CatalogServiceImpl serviceImpl) {
+        long version = CatalogVersion.get(vertx).current();
+        if (version == snapshotVersion) {
+            return;
+        }
+        serviceImpl.snapshot(ar -> {
+            if (ar.failed()) {
+                log.warn("Failed to read the catalog snapshot from the database: " + ar.cause().getMessage());
+                return;
+            }
+            vertx.executeBlocking(f -> {
+                try {
+                    ar.result().write(snapshotFile);
+                    f.complete();
+                } catch (Exception e) {
+                    f.fail(e);
+                }
+            }, false, ar1 -> {
+                if (ar1.succeeded()) {
+                    snapshotVersion = version;
+                    log.debug("Wrote " + ar.result().products().size() + " products to the catalog snapshot at version "
+                            + ar.result().version());
+                } else {
+                    log.warn("Failed to write the catalog snapshot " + snapshotFile, ar1.cause());
+                }
+            });
+        });
+    }
 
-        startFuture.complete();
+    private LocalMap<String, String> snapshots() {
+        return vertx.sharedData().getLocalMap("catalog.snapshot");
     }
 
     @Override
     public void stop() throws Exception {
+        Optional.ofNullable(probe).ifPresent(p -> p.stop());
         Optional.ofNullable(client).ifPresent(c -> c.close());
+        Optional.ofNullable(readClient).ifPresent(c -> c.close());
+        if (snapshotFile != null) {
+            // another instance takes over on its next start
+            snapshots().removeIfPresent("writer", snapshotWriter);
+        }
     }
 
 }
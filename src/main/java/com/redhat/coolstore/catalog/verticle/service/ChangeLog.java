@@ -0,0 +1,115 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Bounded in-memory log of the latest product changes, ordered by catalog version. Each change is a
+ * {@code {version, timestamp, product}} object, as published on {@link CatalogService#CHANGES_ADDRESS}.
+ * <p/>
+ * The log only answers for versions it has seen all the changes after: the changes published before it started
+ * recording, and the changes evicted to keep it within its size, are only available from the database. Changes are
+ * published on the event bus of the Vert.x instance only, so the changes written by the other instances of the
+ * service, and the writes still in progress, show up as gaps in the versions: the log does not answer across a gap,
+ * nor for versions after its last change, and these changes are read from the database too.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the verticle owning the service.
+ */
+public class ChangeLog {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    // above the longest a write can take once its version is allocated: waiting for a connection of the write pool,
+    // and then for the circuit breaker to time the call out
+    public static final long DEFAULT_GRACE_PERIOD = 30000;
+
+    private final int maxSize;
+
+    private final TreeMap<Long, JsonObject> changes = new TreeMap<>();
+
+    private boolean started;
+
+    // the log holds every change with a version greater than both of these once started
+    private long startVersion;
+    private long evictedVersion;
+
+    public ChangeLog(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Starts answering for the changes after the given version of the catalog. Changes may be added before, they
+     * are kept if they are more recent.
+     */
+    public void start(long version) {
+        if (!started) {
+            started = true;
+            startVersion = version;
+            changes.headMap(version, true).clear();
+        }
+    }
+
+    public void add(JsonObject change) {
+        Long version = change.getLong("version");
+        if (version == null || version <= evictedVersion || started && version <= startVersion) {
+            return;
+        }
+        changes.put(version, change);
+        while (changes.size() > maxSize) {
+            evictedVersion = Math.max(evictedVersion, changes.pollFirstEntry().getKey());
+        }
+    }
+
+    /**
+     * Returns at most {@code limit} changes with a version greater than {@code since}, oldest first, or null when
+     * some of these changes are not in the log: a version is missing between {@code since} and the last change
+     * returned, or the log ends before {@code current}, the latest version of the catalog.
+     */
+    public List<JsonObject> since(long since, int limit, long current) {
+        if (!started || since < startVersion || since < evictedVersion) {
+            return null;
+        }
+        List<JsonObject> result = new ArrayList<>();
+        long expected = since + 1;
+        for (Map.Entry<Long, JsonObject> entry : changes.tailMap(since, false).entrySet()) {
+            if (result.size() >= limit) {
+                return result;
+            }
+            if (entry.getKey() != expected) {
+                return null;
+            }
+            result.add(entry.getValue());
+            expected++;
+        }
+        return result.size() >= limit || expected > current ? result : null;
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * Returns the version a client having applied the given changes can safely ask the next changes from.
+     * <p/>
+     * Versions are allocated before products are written, so concurrent writes may become visible out of order:
+     * the cursor stops before a missing version, so that its change is still returned when it shows up. A missing
+     * version followed by changes older than the grace period is skipped, as its write either failed or was
+     * superseded by a later write of the same product.
+     */
+    public static long cursor(long since, List<JsonObject> changes, long now, long gracePeriod) {
+        long cursor = since;
+        for (JsonObject change : changes) {
+            long version = change.getLong("version");
+            if (version != cursor + 1 && change.getLong("timestamp", 0L) > now - gracePeriod) {
+                break;
+            }
+            cursor = version;
+        }
+        return cursor;
+    }
+
+}
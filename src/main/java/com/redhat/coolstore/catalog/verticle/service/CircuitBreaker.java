@@ -0,0 +1,203 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Circuit breaker around the MongoDB calls of the catalog service.
+ * <p/>
+ * The breaker opens after {@code failureThreshold} consecutive calls failed or timed out, and then fails the calls
+ * straight away with an {@link OpenException}, instead of piling more requests on a database which is already
+ * struggling. Once {@code resetTimeout} milliseconds have passed, a single trial call is let through: the breaker
+ * closes when it succeeds, and opens again otherwise. Write errors, such as a duplicate key, are answers of a healthy
+ * database and do not count as failures.
+ * <p/>
+ * Calls which do not complete within {@code callTimeout} milliseconds are failed and counted as failures, their late
+ * result is ignored.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the verticle owning the service.
+ */
+public class CircuitBreaker {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    public static final long DEFAULT_RESET_TIMEOUT = 10000;
+
+    public static final long DEFAULT_CALL_TIMEOUT = 5000;
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Failure of a call rejected because the breaker is open.
+     */
+    public static class OpenException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        OpenException() {
+            super("MongoDB circuit breaker is open", null, false, false);
+        }
+    }
+
+    private final Vertx vertx;
+
+    private final int failureThreshold;
+
+    private final long resetTimeout;
+
+    private final long callTimeout;
+
+    private final CatalogHealth health;
+
+    private State state = State.CLOSED;
+
+    private int failures;
+
+    private long openedAt;
+
+    private final LongAdder rejected;
+
+    private final LongAdder opened;
+
+    CircuitBreaker(Vertx vertx, int failureThreshold, long resetTimeout, long callTimeout, CatalogMetrics metrics) {
+        this.vertx = vertx;
+        this.failureThreshold = failureThreshold;
+        this.resetTimeout = resetTimeout;
+        this.callTimeout = callTimeout;
+        this.health = CatalogHealth.get(vertx);
+        this.rejected = metrics.counter("catalog_mongo_breaker_rejected_total",
+                "MongoDB calls failed fast by an open circuit breaker", "");
+        this.opened = metrics.counter("catalog_mongo_breaker_opened_total",
+                "Times a MongoDB circuit breaker opened", "");
+        metrics.gauge("catalog_mongo_breakers_open", "MongoDB circuit breakers currently open", "",
+                () -> health.openBreakers());
+    }
+
+    /**
+     * Returns the breaker configured for the catalog service, or null when the breaker is disabled.
+     */
+    static CircuitBreaker create(Vertx vertx, JsonObject config) {
+        if (!config.getBoolean("catalog.mongo.breaker.enabled", true)) {
+            return null;
+        }
+        return new CircuitBreaker(vertx,
+                config.getInteger("catalog.mongo.breaker.failure-threshold", DEFAULT_FAILURE_THRESHOLD),
+                config.getLong("catalog.mongo.breaker.reset-timeout", DEFAULT_RESET_TIMEOUT),
+                config.getLong("catalog.mongo.breaker.call-timeout", DEFAULT_CALL_TIMEOUT),
+                CatalogMetrics.get(vertx));
+    }
+
+    /**
+     * Runs a call, unless the breaker is open, and records its outcome.
+     */
+    public <T> void execute(Handler<Handler<AsyncResult<T>>> call, Handler<AsyncResult<T>> resulthandler) {
+        if (!allowCall()) {
+            rejected.increment();
+            resulthandler.handle(Future.failedFuture(new OpenException()));
+            return;
+        }
+        Call<T> pending = new Call<>(resulthandler);
+        if (callTimeout > 0) {
+            pending.timer = vertx.setTimer(callTimeout, id -> pending.complete(
+                    Future.failedFuture(new TimeoutException("MongoDB call timed out after " + callTimeout + "ms"))));
+        }
+        try {
+            call.handle(pending::complete);
+        } catch (RuntimeException e) {
+            if (pending.completed) {
+                // thrown by the result handler
+                throw e;
+            }
+            // a closed client throws rather than failing the call
+            pending.complete(Future.failedFuture(e));
+        }
+    }
+
+    State state() {
+        return state;
+    }
+
+    private boolean allowCall() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt >= resetTimeout) {
+                    // the trial call
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // the trial call is still running
+                return false;
+        }
+    }
+
+    private void onSuccess() {
+        failures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            health.breakerClosed();
+        }
+    }
+
+    private void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        } else if (state == State.CLOSED && failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            opened.increment();
+            health.breakerOpened();
+        }
+    }
+
+    private static boolean countsAsFailure(Throwable cause) {
+        return !(cause instanceof MongoWriteException || cause instanceof MongoBulkWriteException);
+    }
+
+    private class Call<T> {
+
+        private final Handler<AsyncResult<T>> resulthandler;
+
+        private long timer = -1;
+
+        private boolean completed;
+
+        private Call(Handler<AsyncResult<T>> resulthandler) {
+            this.resulthandler = resulthandler;
+        }
+
+        private void complete(AsyncResult<T> ar) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            if (timer != -1) {
+                vertx.cancelTimer(timer);
+            }
+            if (ar.succeeded() || !countsAsFailure(ar.cause())) {
+                onSuccess();
+            } else {
+                onFailure();
+            }
+            resulthandler.handle(ar);
+        }
+    }
+
+}
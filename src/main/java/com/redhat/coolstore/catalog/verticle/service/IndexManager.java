@@ -0,0 +1,127 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.mongodb.MongoCommandException;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.mongo.MongoClient;
+
+/**
+ * Makes sure the indexes declared for a collection exist.
+ * <p/>
+ * The existing indexes are listed first, missing ones are logged and then created in the background, so that a
+ * deployment against a large collection does not block the database. The {@code listIndexes} and
+ * {@code createIndexes} database commands are used directly, as the Vert.x Mongo client has no index API.
+ */
+public class IndexManager {
+
+    private static final int NAMESPACE_NOT_FOUND = 26;
+
+    private static final String ID_INDEX = "_id_";
+
+    private final MongoClient client;
+
+    private final String collection;
+
+    private final List<JsonObject> indexes = new ArrayList<>();
+
+    Logger log = LoggerFactory.getLogger(IndexManager.class);
+
+    public IndexManager(MongoClient client, String collection) {
+        this.client = client;
+        this.collection = collection;
+    }
+
+    /**
+     * Declares an index on the given key, e.g. {@code {"price": 1}}. The index is named after its key, following
+     * the MongoDB naming convention.
+     */
+    public IndexManager declare(JsonObject key) {
+        indexes.add(new JsonObject()
+                .put("key", key)
+                .put("name", name(key))
+                .put("background", true));
+        return this;
+    }
+
+    /**
+     * Checks the declared indexes against the existing ones and creates the missing ones. The result handler is
+     * called with the names of the indexes that were created.
+     */
+    public void ensureIndexes(Handler<AsyncResult<List<String>>> resultHandler) {
+        listIndexes(ar -> {
+            if (ar.failed()) {
+                resultHandler.handle(Future.failedFuture(ar.cause()));
+                return;
+            }
+            Set<String> existing = ar.result();
+            // the _id index is created by the database along with the collection
+            existing.add(ID_INDEX);
+            List<JsonObject> missing = indexes.stream()
+                    .filter(index -> !existing.contains(index.getString("name")))
+                    .collect(Collectors.toList());
+            if (missing.isEmpty()) {
+                resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+                return;
+            }
+            List<String> names = missing.stream().map(index -> index.getString("name")).collect(Collectors.toList());
+            log.warn("Missing indexes on collection " + collection + ": " + names);
+            JsonObject command = new JsonObject()
+                    .put("createIndexes", collection)
+                    .put("indexes", new JsonArray(missing));
+            client.runCommand("createIndexes", command, ar1 -> {
+                if (ar1.succeeded()) {
+                    log.info("Created indexes on collection " + collection + ": " + names);
+                    resultHandler.handle(Future.succeededFuture(names));
+                } else {
+                    resultHandler.handle(Future.failedFuture(ar1.cause()));
+                }
+            });
+        });
+    }
+
+    public void listIndexes(Handler<AsyncResult<Set<String>>> resultHandler) {
+        JsonObject command = new JsonObject().put("listIndexes", collection);
+        client.runCommand("listIndexes", command, ar -> {
+            if (ar.succeeded()) {
+                Set<String> names = new HashSet<>();
+                JsonObject cursor = ar.result().getJsonObject("cursor", new JsonObject());
+                cursor.getJsonArray("firstBatch", new JsonArray()).forEach(index -> {
+                    names.add(((JsonObject) index).getString("name"));
+                });
+                resultHandler.handle(Future.succeededFuture(names));
+            } else if (isNamespaceNotFound(ar.cause())) {
+                // the collection does not exist yet, so neither do its indexes
+                resultHandler.handle(Future.succeededFuture(new HashSet<>()));
+            } else {
+                resultHandler.handle(Future.failedFuture(ar.cause()));
+            }
+        });
+    }
+
+    static String name(JsonObject key) {
+        if (key.size() == 1 && key.containsKey("_id")) {
+            return ID_INDEX;
+        }
+        return key.fieldNames().stream()
+                .map(field -> field + "_" + key.getValue(field))
+                .collect(Collectors.joining("_"));
+    }
+
+    private boolean isNamespaceNotFound(Throwable cause) {
+        return cause instanceof MongoCommandException
+                && ((MongoCommandException) cause).getErrorCode() == NAMESPACE_NOT_FOUND;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+/**
+ * Last products read from or written to the database, to answer reads while the database is unavailable.
+ * <p/>
+ * Unlike the {@link ProductCache}, entries do not expire: stale products are better than no products while the
+ * database fails over. The whole catalog is only available once it was loaded, and as long as it fits in
+ * {@code maxSize} products.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the verticle owning the service.
+ */
+public class LastKnownProducts {
+
+    public static final int DEFAULT_MAX_SIZE = 100000;
+
+    private final int maxSize;
+
+    private final Map<String, Product> products = new LinkedHashMap<>();
+
+    private boolean complete;
+
+    public LastKnownProducts(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Product get(String itemId) {
+        return products.get(itemId);
+    }
+
+    /**
+     * Returns all the products, or null when the whole catalog is not known.
+     */
+    public List<Product> all() {
+        return complete ? new ArrayList<>(products.values()) : null;
+    }
+
+    /**
+     * Returns true when products missing from this store are missing from the catalog too.
+     */
+    public boolean complete() {
+        return complete;
+    }
+
+    public void put(Product product) {
+        if (products.size() < maxSize || products.containsKey(product.getItemId())) {
+            products.put(product.getItemId(), product);
+        } else {
+            complete = false;
+        }
+    }
+
+    /**
+     * Replaces the products with the whole catalog.
+     */
+    public void putAll(List<Product> catalog) {
+        products.clear();
+        complete = true;
+        catalog.forEach(this::put);
+    }
+
+    public int size() {
+        return products.size();
+    }
+
+}
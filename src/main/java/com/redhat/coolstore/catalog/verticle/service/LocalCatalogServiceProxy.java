@@ -0,0 +1,113 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Proxy to the catalog service for callers deployed in the same JVM as the service.
+ * <p/>
+ * Calls and results go over the event bus like with {@link CatalogServiceVertxEBProxy}, so the service still runs
+ * on the event loop of its verticle, but they are passed by reference with the {@link LocalMessageCodec} instead
+ * of being converted to and from JSON. Products returned by the service are shared with the caller and must not
+ * be modified.
+ */
+public class LocalCatalogServiceProxy implements CatalogService {
+
+    private final Vertx vertx;
+
+    private final DeliveryOptions options = new DeliveryOptions().setCodecName(LocalMessageCodec.NAME);
+
+    public LocalCatalogServiceProxy(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * Registers the local consumer invoking the given service, the counterpart of
+     * {@link io.vertx.serviceproxy.ProxyHelper#registerService} for the local proxy.
+     */
+    public static MessageConsumer<?> registerService(Vertx vertx, CatalogService service) {
+        DeliveryOptions options = new DeliveryOptions().setCodecName(LocalMessageCodec.NAME);
+        return vertx.eventBus().<LocalInvocation<Object>>localConsumer(LOCAL_ADDRESS, message -> {
+            message.body().invoke(service, ar -> {
+                if (ar.succeeded()) {
+                    message.reply(ar.result(), options);
+                } else {
+                    message.fail(-1, ar.cause().getMessage());
+                }
+            });
+        });
+    }
+
+    @Override
+    public void getProducts(Handler<AsyncResult<List<Product>>> resulthandler) {
+        call((s, h) -> s.getProducts(h), resulthandler);
+    }
+
+    @Override
+    public void getProduct(String itemId, Handler<AsyncResult<Product>> resulthandler) {
+        call((s, h) -> s.getProduct(itemId, h), resulthandler);
+    }
+
+    @Override
+    public void getProductsWithFields(List<String> fields, Handler<AsyncResult<List<JsonObject>>> resulthandler) {
+        call((s, h) -> s.getProductsWithFields(fields, h), resulthandler);
+    }
+
+    @Override
+    public void getProductWithFields(String itemId, List<String> fields,
+            Handler<AsyncResult<JsonObject>> resulthandler) {
+        call((s, h) -> s.getProductWithFields(itemId, fields, h), resulthandler);
+    }
+
+    @Override
+    public void getProductsByIds(List<String> itemIds, Handler<AsyncResult<List<Product>>> resulthandler) {
+        call((s, h) -> s.getProductsByIds(itemIds, h), resulthandler);
+    }
+
+    @Override
+    public void addProduct(Product product, Handler<AsyncResult<String>> resulthandler) {
+        call((s, h) -> s.addProduct(product, h), resulthandler);
+    }
+
+    @Override
+    public void addProducts(List<Product> products, Handler<AsyncResult<JsonObject>> resulthandler) {
+        call((s, h) -> s.addProducts(products, h), resulthandler);
+    }
+
+    @Override
+    public void getProductPage(String after, int limit, Handler<AsyncResult<List<JsonObject>>> resulthandler) {
+        call((s, h) -> s.getProductPage(after, limit, h), resulthandler);
+    }
+
+    @Override
+    public void getChanges(long since, int limit, Handler<AsyncResult<JsonObject>> resulthandler) {
+        call((s, h) -> s.getChanges(since, limit, h), resulthandler);
+    }
+
+    @Override
+    public void ping(Handler<AsyncResult<String>> resultHandler) {
+        call((s, h) -> s.ping(h), resultHandler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void call(BiConsumer<CatalogService, Handler<AsyncResult<T>>> call, Handler<AsyncResult<T>> resultHandler) {
+        vertx.eventBus().send(LOCAL_ADDRESS, new LocalInvocation<>(call), options, ar -> {
+            if (ar.succeeded()) {
+                resultHandler.handle(Future.succeededFuture((T) ar.result().body()));
+            } else {
+                resultHandler.handle(Future.failedFuture(ar.cause()));
+            }
+        });
+    }
+
+}
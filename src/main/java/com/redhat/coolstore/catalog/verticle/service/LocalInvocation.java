@@ -0,0 +1,23 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.function.BiConsumer;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+/**
+ * A call to the catalog service sent by reference to the local service consumer.
+ */
+class LocalInvocation<T> {
+
+    private final BiConsumer<CatalogService, Handler<AsyncResult<T>>> call;
+
+    LocalInvocation(BiConsumer<CatalogService, Handler<AsyncResult<T>>> call) {
+        this.call = call;
+    }
+
+    void invoke(CatalogService service, Handler<AsyncResult<T>> resultHandler) {
+        call.accept(service, resultHandler);
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * Event bus codec passing message bodies by reference. It can only be used for local delivery: messages using it
+ * can not be sent over the wire to another node of a cluster.
+ */
+public class LocalMessageCodec implements MessageCodec<Object, Object> {
+
+    public static final String NAME = "catalog-local";
+
+    @Override
+    public void encodeToWire(Buffer buffer, Object o) {
+        throw new UnsupportedOperationException("Local messages can not be sent over the wire");
+    }
+
+    @Override
+    public Object decodeFromWire(int pos, Buffer buffer) {
+        throw new UnsupportedOperationException("Local messages can not be received from the wire");
+    }
+
+    @Override
+    public Object transform(Object o) {
+        return o;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+
+}
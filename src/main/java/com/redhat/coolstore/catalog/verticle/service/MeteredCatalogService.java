@@ -0,0 +1,95 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Decorates a proxy to the catalog service to count the calls waiting for a reply from the service. Each call
+ * allocates a handler wrapping the one of the caller, to count the reply.
+ */
+public class MeteredCatalogService implements CatalogService {
+
+    private final CatalogService delegate;
+
+    private final LongAdder pending;
+
+    public MeteredCatalogService(CatalogService delegate, LongAdder pending) {
+        this.delegate = delegate;
+        this.pending = pending;
+    }
+
+    @Override
+    public void getProducts(Handler<AsyncResult<List<Product>>> resulthandler) {
+        pending.increment();
+        delegate.getProducts(replied(resulthandler));
+    }
+
+    @Override
+    public void getProduct(String itemId, Handler<AsyncResult<Product>> resulthandler) {
+        pending.increment();
+        delegate.getProduct(itemId, replied(resulthandler));
+    }
+
+    @Override
+    public void getProductsWithFields(List<String> fields, Handler<AsyncResult<List<JsonObject>>> resulthandler) {
+        pending.increment();
+        delegate.getProductsWithFields(fields, replied(resulthandler));
+    }
+
+    @Override
+    public void getProductWithFields(String itemId, List<String> fields,
+            Handler<AsyncResult<JsonObject>> resulthandler) {
+        pending.increment();
+        delegate.getProductWithFields(itemId, fields, replied(resulthandler));
+    }
+
+    @Override
+    public void getProductsByIds(List<String> itemIds, Handler<AsyncResult<List<Product>>> resulthandler) {
+        pending.increment();
+        delegate.getProductsByIds(itemIds, replied(resulthandler));
+    }
+
+    @Override
+    public void addProduct(Product product, Handler<AsyncResult<String>> resulthandler) {
+        pending.increment();
+        delegate.addProduct(product, replied(resulthandler));
+    }
+
+    @Override
+    public void addProducts(List<Product> products, Handler<AsyncResult<JsonObject>> resulthandler) {
+        pending.increment();
+        delegate.addProducts(products, replied(resulthandler));
+    }
+
+    @Override
+    public void getProductPage(String after, int limit, Handler<AsyncResult<List<JsonObject>>> resulthandler) {
+        pending.increment();
+        delegate.getProductPage(after, limit, replied(resulthandler));
+    }
+
+    @Override
+    public void getChanges(long since, int limit, Handler<AsyncResult<JsonObject>> resulthandler) {
+        pending.increment();
+        delegate.getChanges(since, limit, replied(resulthandler));
+    }
+
+    @Override
+    public void ping(Handler<AsyncResult<String>> resultHandler) {
+        pending.increment();
+        delegate.ping(replied(resultHandler));
+    }
+
+    private <T> Handler<AsyncResult<T>> replied(Handler<AsyncResult<T>> resultHandler) {
+        return ar -> {
+            pending.decrement();
+            resultHandler.handle(ar);
+        };
+    }
+
+}
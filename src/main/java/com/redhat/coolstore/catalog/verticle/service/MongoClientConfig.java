@@ -0,0 +1,113 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Configurations of the MongoDB clients of the catalog service.
+ * <p/>
+ * Writes go to the primary. Reads go to a secondary when one is no more than {@code max-staleness} seconds behind
+ * the primary, and to the primary otherwise. Each client has its own pool, wait queue and timeouts, configured with
+ * the {@code catalog.mongo.read.*} and {@code catalog.mongo.write.*} keys. The options are passed in the connection
+ * string, as the Vert.x client ignores most of the configuration keys when a connection string is given.
+ */
+public final class MongoClientConfig {
+
+    public static final String READ = "catalog-read";
+
+    public static final String WRITE = "catalog-write";
+
+    public static final int DEFAULT_MAX_POOL_SIZE = 100;
+
+    public static final int DEFAULT_WAIT_QUEUE_MULTIPLE = 5;
+
+    public static final long DEFAULT_WAIT_QUEUE_TIMEOUT = 2000;
+
+    public static final String DEFAULT_READ_PREFERENCE = "secondaryPreferred";
+
+    // the minimum accepted by MongoDB
+    public static final long DEFAULT_MAX_STALENESS = 90;
+
+    // configuration key suffix and connection string option
+    private static final String[][] OPTIONS = {
+            {"max-pool-size", "maxPoolSize"},
+            {"min-pool-size", "minPoolSize"},
+            {"max-idle-time", "maxIdleTimeMS"},
+            {"wait-queue-multiple", "waitQueueMultiple"},
+            {"wait-queue-timeout", "waitQueueTimeoutMS"},
+            {"connect-timeout", "connectTimeoutMS"},
+            {"socket-timeout", "socketTimeoutMS"},
+            {"server-selection-timeout", "serverSelectionTimeoutMS"}
+    };
+
+    private MongoClientConfig() {
+    }
+
+    public static JsonObject read(JsonObject config) {
+        String readPreference = config.getString("catalog.mongo.read.read-preference", DEFAULT_READ_PREFERENCE);
+        StringBuilder options = options(config, "catalog.mongo.read.");
+        options.append("&readPreference=").append(readPreference);
+        if (!readPreference.equals("primary")) {
+            options.append("&maxStalenessSeconds=")
+                    .append(config.getLong("catalog.mongo.read.max-staleness", DEFAULT_MAX_STALENESS));
+        }
+        return config.copy().put("connection_string", connectionString(config, options));
+    }
+
+    public static JsonObject write(JsonObject config) {
+        StringBuilder options = options(config, "catalog.mongo.write.");
+        options.append("&readPreference=primary");
+        return config.copy().put("connection_string", connectionString(config, options));
+    }
+
+    /**
+     * Returns the pool size of a client, the number of MongoDB calls it runs concurrently.
+     */
+    public static int maxPoolSize(JsonObject config, String client) {
+        return config.getInteger(prefix(client) + "max-pool-size", DEFAULT_MAX_POOL_SIZE);
+    }
+
+    /**
+     * Returns the number of MongoDB calls of a client which may wait for a connection.
+     */
+    public static int maxWaitQueueSize(JsonObject config, String client) {
+        return maxPoolSize(config, client)
+                * config.getInteger(prefix(client) + "wait-queue-multiple", DEFAULT_WAIT_QUEUE_MULTIPLE);
+    }
+
+    public static long waitQueueTimeout(JsonObject config, String client) {
+        return config.getLong(prefix(client) + "wait-queue-timeout", DEFAULT_WAIT_QUEUE_TIMEOUT);
+    }
+
+    private static String prefix(String client) {
+        return READ.equals(client) ? "catalog.mongo.read." : "catalog.mongo.write.";
+    }
+
+    private static StringBuilder options(JsonObject config, String prefix) {
+        StringBuilder options = new StringBuilder()
+                .append("maxPoolSize=").append(config.getInteger(prefix + "max-pool-size", DEFAULT_MAX_POOL_SIZE))
+                .append("&waitQueueMultiple=")
+                .append(config.getInteger(prefix + "wait-queue-multiple", DEFAULT_WAIT_QUEUE_MULTIPLE))
+                .append("&waitQueueTimeoutMS=")
+                .append(config.getLong(prefix + "wait-queue-timeout", DEFAULT_WAIT_QUEUE_TIMEOUT));
+        for (String[] option : OPTIONS) {
+            Object value = config.getValue(prefix + option[0]);
+            if (value != null && options.indexOf(option[1] + "=") < 0) {
+                options.append('&').append(option[1]).append('=').append(value);
+            }
+        }
+        return options;
+    }
+
+    private static String connectionString(JsonObject config, CharSequence options) {
+        String connectionString = config.getString("connection_string");
+        if (connectionString == null) {
+            connectionString = "mongodb://" + config.getString("host", "localhost") + ":"
+                    + config.getInteger("port", 27017) + "/";
+        } else if (connectionString.indexOf('/', "mongodb://".length()) < 0) {
+            // the options come after the path, even an empty one
+            connectionString = connectionString + "/";
+        }
+        return connectionString + (connectionString.indexOf('?') < 0 ? "?" : "&") + options;
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+import com.redhat.coolstore.catalog.metrics.Histogram;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+
+/**
+ * Periodic {@code ping} of MongoDB, the source of the health of the catalog service.
+ * <p/>
+ * MongoDB is {@code UP} when the last ping answered within {@code degradedLatency} milliseconds, and
+ * {@code DEGRADED} when it answered more slowly. It is {@code DOWN} after {@code failureThreshold} consecutive
+ * pings failed, took longer than {@code downLatency}, or are still waiting for an answer after {@code downLatency}.
+ * A single lost ping does not make the service unhealthy.
+ * <p/>
+ * Instances are not thread safe: they are meant to be used from the event loop of the verticle owning the service.
+ */
+public class MongoHealthProbe {
+
+    public static final long DEFAULT_INTERVAL = 5000;
+
+    public static final long DEFAULT_DEGRADED_LATENCY = 100;
+
+    public static final long DEFAULT_DOWN_LATENCY = 1000;
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+
+    private static final JsonObject PING = new JsonObject().put("ping", 1);
+
+    public enum Status {
+        UP, DEGRADED, DOWN
+    }
+
+    private final Vertx vertx;
+
+    private final MongoClient client;
+
+    private final long interval;
+
+    private final long degradedLatency;
+
+    private final long downLatency;
+
+    private final int failureThreshold;
+
+    private final Histogram pingTimer;
+
+    private Status status = Status.UP;
+
+    private int failures;
+
+    private long latency = -1;
+
+    private String lastError;
+
+    private long pingStart = -1;
+
+    private long timer = -1;
+
+    MongoHealthProbe(Vertx vertx, MongoClient client, long interval, long degradedLatency, long downLatency,
+            int failureThreshold) {
+        this.vertx = vertx;
+        this.client = client;
+        this.interval = interval;
+        this.degradedLatency = degradedLatency;
+        this.downLatency = downLatency;
+        this.failureThreshold = failureThreshold;
+        this.pingTimer = CatalogMetrics.get(vertx).mongoOperationDuration("ping");
+    }
+
+    static MongoHealthProbe create(Vertx vertx, JsonObject config, MongoClient client) {
+        return new MongoHealthProbe(vertx, client,
+                config.getLong("catalog.health.probe-interval", DEFAULT_INTERVAL),
+                config.getLong("catalog.health.degraded-latency", DEFAULT_DEGRADED_LATENCY),
+                config.getLong("catalog.health.down-latency", DEFAULT_DOWN_LATENCY),
+                config.getInteger("catalog.health.failure-threshold", DEFAULT_FAILURE_THRESHOLD));
+    }
+
+    /**
+     * Pings MongoDB now and then every {@code interval} milliseconds. Until then, MongoDB is assumed to be up.
+     */
+    public void start() {
+        if (timer == -1) {
+            probe();
+            timer = vertx.setPeriodic(interval, l -> probe());
+        }
+    }
+
+    public void stop() {
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    /**
+     * Returns the status, latency in milliseconds and last error of the probe.
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject()
+                .put("status", status.name())
+                .put("latency", latency);
+        if (lastError != null) {
+            json.put("error", lastError);
+        }
+        return json;
+    }
+
+    private void probe() {
+        long now = System.currentTimeMillis();
+        if (pingStart != -1) {
+            // the previous ping is still waiting, it counts as a failure once and is not repeated
+            if (now - pingStart > downLatency) {
+                pingStart = -1;
+                failed("ping timed out after " + downLatency + "ms");
+            }
+            return;
+        }
+        long start = now;
+        pingStart = start;
+        long nanos = System.nanoTime();
+        client.runCommand("ping", PING, ar -> {
+            pingTimer.recordSince(nanos);
+            if (pingStart != start) {
+                // already counted as timed out
+                return;
+            }
+            pingStart = -1;
+            latency = System.currentTimeMillis() - start;
+            if (ar.failed()) {
+                failed(ar.cause().getMessage());
+            } else if (latency > downLatency) {
+                failed("ping took " + latency + "ms");
+            } else {
+                failures = 0;
+                lastError = null;
+                status = latency > degradedLatency ? Status.DEGRADED : Status.UP;
+            }
+        });
+    }
+
+    private void failed(String error) {
+        lastError = error;
+        failures++;
+        if (failures >= failureThreshold) {
+            status = Status.DOWN;
+        } else if (status == Status.UP) {
+            status = Status.DEGRADED;
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+import com.redhat.coolstore.catalog.metrics.Histogram;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * Limits the MongoDB calls in progress through a client to the size of its connection pool, and measures how long
+ * calls wait for a connection.
+ * <p/>
+ * The Vert.x client does not expose the pool of the driver, so the calls wait here instead: with no more calls in
+ * progress than connections, calls never wait in the driver. At most {@code maxWaiting} calls wait, for at most
+ * {@code waitTimeout} milliseconds, the others fail straight away. The pool of a client is shared by all the
+ * verticles using the client, and waiting calls are resumed on the context they come from.
+ */
+public class MongoPool implements Shareable {
+
+    private static final String MAP_NAME = "catalog.mongo.pools";
+
+    private final Vertx vertx;
+
+    private final int size;
+
+    private final int maxWaiting;
+
+    private final long waitTimeout;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    private final Histogram waitTime;
+
+    private final LongAdder waitTimeouts;
+
+    private final LongAdder waitQueueFull;
+
+    MongoPool(Vertx vertx, String client, int size, int maxWaiting, long waitTimeout, CatalogMetrics metrics) {
+        this.vertx = vertx;
+        this.size = size;
+        this.maxWaiting = maxWaiting;
+        this.waitTimeout = waitTimeout;
+
+        String label = CatalogMetrics.label("client", client);
+        metrics.gauge("catalog_mongo_pool_size", "MongoDB connections by client", label, () -> size);
+        metrics.gauge("catalog_mongo_pool_in_use", "MongoDB connections in use by client", label, inUse::get);
+        metrics.gauge("catalog_mongo_pool_waiting", "MongoDB calls waiting for a connection by client", label,
+                waiting::get);
+        this.waitTime = metrics.histogram("catalog_mongo_pool_wait_seconds",
+                "Time MongoDB calls waited for a connection by client", label);
+        String rejected = "catalog_mongo_pool_rejected_total";
+        String rejectedHelp = "MongoDB calls which did not get a connection by client and reason";
+        this.waitTimeouts = metrics.counter(rejected, rejectedHelp,
+                label + "," + CatalogMetrics.label("reason", "timeout"));
+        this.waitQueueFull = metrics.counter(rejected, rejectedHelp,
+                label + "," + CatalogMetrics.label("reason", "queue_full"));
+    }
+
+    /**
+     * Returns the pool of the named client, created on first use with the configuration of the client.
+     */
+    public static MongoPool get(Vertx vertx, JsonObject config, String client) {
+        LocalMap<String, MongoPool> map = vertx.sharedData().getLocalMap(MAP_NAME);
+        MongoPool pool = map.get(client);
+        if (pool == null) {
+            MongoPool created = new MongoPool(vertx, client, MongoClientConfig.maxPoolSize(config, client),
+                    MongoClientConfig.maxWaitQueueSize(config, client),
+                    MongoClientConfig.waitQueueTimeout(config, client), CatalogMetrics.get(vertx));
+            pool = map.putIfAbsent(client, created);
+            if (pool == null) {
+                pool = created;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Runs a call once a connection is available, and releases the connection when the call completes.
+     */
+    public <T> void execute(Handler<Handler<AsyncResult<T>>> call, Handler<AsyncResult<T>> resulthandler) {
+        acquire(ar -> {
+            if (ar.failed()) {
+                resulthandler.handle(Future.failedFuture(ar.cause()));
+                return;
+            }
+            AtomicBoolean released = new AtomicBoolean();
+            try {
+                call.handle(result -> {
+                    if (released.compareAndSet(false, true)) {
+                        release();
+                    }
+                    resulthandler.handle(result);
+                });
+            } catch (RuntimeException e) {
+                if (released.compareAndSet(false, true)) {
+                    release();
+                }
+                throw e;
+            }
+        });
+    }
+
+    public int inUse() {
+        return inUse.get();
+    }
+
+    public int waiting() {
+        return waiting.get();
+    }
+
+    private void acquire(Handler<AsyncResult<Void>> granted) {
+        if (tryAcquire()) {
+            waitTime.record(0);
+            granted.handle(Future.succeededFuture());
+            return;
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            waitQueueFull.increment();
+            granted.handle(Future.failedFuture("Too many MongoDB calls waiting for a connection"));
+            return;
+        }
+        Waiter waiter = new Waiter(vertx.getOrCreateContext(), granted);
+        waiters.add(waiter);
+        waiter.timer = vertx.setTimer(waitTimeout, id -> {
+            if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.TIMED_OUT)) {
+                waiting.decrementAndGet();
+                waitTimeouts.increment();
+                granted.handle(Future.failedFuture("Timed out after " + waitTimeout
+                        + "ms waiting for a MongoDB connection"));
+            }
+        });
+        // a connection may have been released before the waiter was queued
+        dispatch();
+    }
+
+    private void release() {
+        inUse.decrementAndGet();
+        dispatch();
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inUse.get();
+            if (current >= size) {
+                return false;
+            }
+            if (inUse.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Hands the available connections over to the waiters, oldest first.
+     */
+    private void dispatch() {
+        while (!waiters.isEmpty() && tryAcquire()) {
+            Waiter waiter = waiters.poll();
+            if (waiter != null && waiter.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+                waiting.decrementAndGet();
+                waiter.context.runOnContext(v -> {
+                    vertx.cancelTimer(waiter.timer);
+                    waitTime.recordSince(waiter.queued);
+                    waiter.granted.handle(Future.succeededFuture());
+                });
+            } else {
+                // taken by another thread, or timed out
+                inUse.decrementAndGet();
+            }
+        }
+    }
+
+    private static class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int TIMED_OUT = 2;
+
+        private final Context context;
+
+        private final Handler<AsyncResult<Void>> granted;
+
+        private final long queued = System.nanoTime();
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        // only read and written on the context of the waiter
+        private long timer;
+
+        private Waiter(Context context, Handler<AsyncResult<Void>> granted) {
+            this.context = context;
+            this.granted = granted;
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+import com.redhat.coolstore.catalog.model.Product;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * In-process read-through cache for the catalog, keyed by itemId, plus a cached view of the full catalog.
+ * <p/>
+ * Entries are bounded by size (least recently used entries are evicted first) and by time to live. The full catalog
+ * view is only kept when the catalog fits in {@code maxSize} products, so a cache never holds more than
+ * {@code maxSize} products. There is one cache per CatalogVerticle instance. Hits, misses and evictions are counted
+ * per cache, and summed over all the caches of the Vert.x instance in {@link CatalogMetrics}.
+ * Instances are not thread safe: they are meant to be used from the event loop of the verticle owning the service.
+ */
+public class ProductCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TTL = 60000;
+
+    private final int maxSize;
+    private final long ttl;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private List<Product> all;
+    private long allExpiresAt;
+
+    // bumped on every write, so that loads started before a write do not overwrite newer data
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private final LongAdder hitsTotal;
+    private final LongAdder missesTotal;
+    private final LongAdder evictionsTotal;
+
+    public ProductCache(int maxSize, long ttl, CatalogMetrics metrics) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.hitsTotal = metrics.counter("catalog_cache_hits_total",
+                "Product cache lookups answered from the cache", "");
+        this.missesTotal = metrics.counter("catalog_cache_misses_total",
+                "Product cache lookups answered from the database", "");
+        this.evictionsTotal = metrics.counter("catalog_cache_evictions_total",
+                "Product cache entries evicted for size or expired", "");
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ProductCache.this.maxSize) {
+                    evicted();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static ProductCache create(JsonObject config, CatalogMetrics metrics) {
+        if (!config.getBoolean("catalog.cache.enabled", true)) {
+            return null;
+        }
+        return new ProductCache(config.getInteger("catalog.cache.max-size", DEFAULT_MAX_SIZE),
+                config.getLong("catalog.cache.ttl", DEFAULT_TTL), metrics);
+    }
+
+    public Product get(String itemId) {
+        Entry entry = entries.get(itemId);
+        if (entry == null) {
+            missed();
+            return null;
+        }
+        if (entry.expiresAt <= now()) {
+            entries.remove(itemId);
+            evicted();
+            missed();
+            return null;
+        }
+        hit();
+        return entry.product;
+    }
+
+    public List<Product> getAll() {
+        if (all == null) {
+            missed();
+            return null;
+        }
+        if (allExpiresAt <= now()) {
+            all = null;
+            evicted();
+            missed();
+            return null;
+        }
+        hit();
+        return all;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Stores a product loaded from the database, unless the cache was written to since the load started.
+     */
+    public void load(Product product, long loadGeneration) {
+        if (product != null && loadGeneration == generation) {
+            entries.put(product.getItemId(), new Entry(product, now() + ttl));
+        }
+    }
+
+    /**
+     * Stores the full catalog loaded from the database, unless the cache was written to since the load started or
+     * the catalog is larger than the cache.
+     */
+    public void loadAll(List<Product> products, long loadGeneration) {
+        if (loadGeneration != generation || products.size() > maxSize) {
+            return;
+        }
+        long expiresAt = now() + ttl;
+        all = Collections.unmodifiableList(products);
+        allExpiresAt = expiresAt;
+        products.forEach(p -> entries.put(p.getItemId(), new Entry(p, expiresAt)));
+    }
+
+    /**
+     * Records a product written to the database. The single product entry is updated,
+     * the full catalog view is invalidated.
+     */
+    public void put(Product product) {
+        generation++;
+        entries.put(product.getItemId(), new Entry(product, now() + ttl));
+        all = null;
+    }
+
+    public void invalidate(String itemId) {
+        generation++;
+        entries.remove(itemId);
+        all = null;
+    }
+
+    public void clear() {
+        generation++;
+        entries.clear();
+        all = null;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    public JsonObject stats() {
+        return new JsonObject()
+                .put("size", entries.size())
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("evictions", evictions);
+    }
+
+    private void hit() {
+        hits++;
+        hitsTotal.increment();
+    }
+
+    private void missed() {
+        misses++;
+        missesTotal.increment();
+    }
+
+    private void evicted() {
+        evictions++;
+        evictionsTotal.increment();
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static class Entry {
+
+        private final Product product;
+        private final long expiresAt;
+
+        private Entry(Product product, long expiresAt) {
+            this.product = product;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
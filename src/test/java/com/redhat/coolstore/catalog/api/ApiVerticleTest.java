@@ -8,14 +8,18 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -36,6 +40,7 @@ import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
@@ -137,6 +142,130 @@ public class ApiVerticleTest {
             .end();
     }
 
+    @Test
+    public void testGetProductsWithFields(TestContext context) throws Exception {
+        List<JsonObject> products = new ArrayList<>();
+        products.add(new JsonObject().put("itemId", "111111").put("name", "productName1").put("price", 100.0));
+        products.add(new JsonObject().put("itemId", "222222").put("name", "productName2").put("price", 100.0));
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                Handler<AsyncResult<List<JsonObject>>> handler = invocation.getArgument(1);
+                handler.handle(Future.succeededFuture(products));
+                return null;
+             }
+         }).when(catalogService).getProductsWithFields(eq(Arrays.asList("name", "price")), any());
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/products?fields=name,price", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                response.bodyHandler(body -> {
+                    JsonArray json = body.toJsonArray();
+                    assertThat(json.size(), equalTo(2));
+                    assertThat(json.getJsonObject(0).containsKey("desc"), is(false));
+                    assertThat(json.getJsonObject(0).getString("name"), equalTo("productName1"));
+                    verify(catalogService).getProductsWithFields(eq(Arrays.asList("name", "price")), any());
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testGetProductWithUnknownField(TestContext context) throws Exception {
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/product/111111?fields=name,version", response -> {
+                assertThat(response.statusCode(), equalTo(400));
+                verify(catalogService, times(0)).getProductWithFields(any(), any(), any());
+                async.complete();
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testPostProductsByIdsWithUnknownField(TestContext context) throws Exception {
+        Async async = context.async();
+        String body = new JsonArray().add("111111").encode();
+        vertx.createHttpClient().post(port, "localhost", "/products/ids?fields=name,version", response -> {
+                assertThat(response.statusCode(), equalTo(400));
+                verify(catalogService, times(0)).getProductsByIds(any(), any());
+                async.complete();
+            })
+            .putHeader("Content-type", "application/json")
+            .putHeader("Content-length", Integer.toString(body.length()))
+            .exceptionHandler(context.exceptionHandler())
+            .write(body)
+            .end();
+    }
+
+    @Test
+    public void testGetProductsByPrice(TestContext context) throws Exception {
+        List<Product> products = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            products.add(new Product(new JsonObject()
+                    .put("itemId", "" + i)
+                    .put("name", "productName" + i)
+                    .put("price", new Double(50.0 - i * 10.0))));
+        }
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                Handler<AsyncResult<List<Product>>> handler = invocation.getArgument(0);
+                handler.handle(Future.succeededFuture(products));
+                return null;
+             }
+         }).when(catalogService).getProducts(any());
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/products?minPrice=15&maxPrice=40&sort=price&limit=2", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                response.bodyHandler(body -> {
+                    List<String> itemIds = body.toJsonArray().stream()
+                            .map(j -> ((JsonObject) j).getString("itemId"))
+                            .collect(Collectors.toList());
+                    assertThat(itemIds, equalTo(Arrays.asList("3", "2")));
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testGetProductsByIds(TestContext context) throws Exception {
+        List<Product> products = new ArrayList<>();
+        products.add(new Product(new JsonObject().put("itemId", "222222").put("name", "productName2").put("price", 20.0)));
+        products.add(new Product(new JsonObject().put("itemId", "111111").put("name", "productName1").put("price", 10.0)));
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                Handler<AsyncResult<List<Product>>> handler = invocation.getArgument(1);
+                handler.handle(Future.succeededFuture(products));
+                return null;
+             }
+         }).when(catalogService).getProductsByIds(any(),any());
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/products?ids=222222,111111", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                response.bodyHandler(body -> {
+                    JsonArray json = body.toJsonArray();
+                    assertThat(json.size(), equalTo(2));
+                    assertThat(json.getJsonObject(0).getString("itemId"), equalTo("222222"));
+                    @SuppressWarnings("unchecked")
+                    ArgumentCaptor<List<String>> argument = ArgumentCaptor.forClass(List.class);
+                    verify(catalogService).getProductsByIds(argument.capture(), any());
+                    assertThat(argument.getValue().size(), equalTo(2));
+                    assertThat(argument.getValue().get(0), equalTo("222222"));
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
     @Test
     public void testGetProduct(TestContext context) throws Exception {
         String itemId = "111111";
@@ -172,6 +301,102 @@ public class ApiVerticleTest {
             .end();
     }
 
+    @Test
+    public void testGetCachedProduct(TestContext context) throws Exception {
+        String itemId = "111111";
+        JsonObject json = new JsonObject()
+                .put("itemId", itemId)
+                .put("name", "productName1")
+                .put("desc", "productDescription1")
+                .put("price", new Double(100.0));
+        Product product = new Product(json);
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                Handler<AsyncResult<Product>> handler = invocation.getArgument(1);
+                handler.handle(Future.succeededFuture(product));
+                return null;
+             }
+         }).when(catalogService).getProduct(eq("111111"),any());
+
+        Async first = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/product/111111", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                response.bodyHandler(body -> first.complete());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+        first.await();
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/product/111111", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                response.bodyHandler(body -> {
+                    assertThat(body.toJsonObject().getString("itemId"), equalTo("111111"));
+                    verify(catalogService, times(1)).getProduct(eq("111111"),any());
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testConditionalGetProduct(TestContext context) throws Exception {
+        String itemId = "111111";
+        JsonObject json = new JsonObject()
+                .put("itemId", itemId)
+                .put("name", "productName1")
+                .put("desc", "productDescription1")
+                .put("price", new Double(100.0));
+        Product product = new Product(json);
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                Handler<AsyncResult<Product>> handler = invocation.getArgument(1);
+                handler.handle(Future.succeededFuture(product));
+                return null;
+             }
+         }).when(catalogService).getProduct(eq("111111"),any());
+
+        List<String> etag = new ArrayList<>();
+        Async first = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/product/111111", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                assertThat(response.headers().get("ETag"), notNullValue());
+                assertThat(response.headers().get("Last-Modified"), notNullValue());
+                assertThat(response.headers().get("X-Catalog-Version"), notNullValue());
+                etag.add(response.headers().get("ETag"));
+                response.bodyHandler(body -> first.complete());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+        first.await();
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/product/111111", response -> {
+                assertThat(response.statusCode(), equalTo(304));
+                assertThat(response.headers().get("ETag"), equalTo(etag.get(0)));
+                response.bodyHandler(body -> {
+                    assertThat(body.length(), equalTo(0));
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .putHeader("If-None-Match", "W/" + etag.get(0))
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testEtagMatches(TestContext context) {
+        assertThat(ApiVerticle.etagMatches("\"abc\"", "\"abc\""), is(true));
+        assertThat(ApiVerticle.etagMatches("\"xyz\", W/\"abc\"", "\"abc\""), is(true));
+        assertThat(ApiVerticle.etagMatches("*", "\"abc\""), is(true));
+        assertThat(ApiVerticle.etagMatches("\"xyz\"", "\"abc\""), is(false));
+        assertThat(ApiVerticle.etagMatches("\"abc\"", "W/\"abc\""), is(true));
+        assertThat(ApiVerticle.etagMatches("\"abc\"", "\"abc-gzip\""), is(false));
+    }
+
     @Test
     public void testGetNonExistingProduct(TestContext context) throws Exception {
         doAnswer(new Answer<Void>() {
@@ -226,7 +451,195 @@ public class ApiVerticleTest {
     }
 
     @Test
-    public void testLivenessHealthCheck(TestContext context) {
+    public void testAddProductsBatch(TestContext context) throws Exception {
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                List<Product> products = invocation.getArgument(0);
+                JsonArray results = new JsonArray();
+                products.forEach(p -> results.add(new JsonObject().put("itemId", p.getItemId()).put("status", "ok")));
+                Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(1);
+                handler.handle(Future.succeededFuture(new JsonObject()
+                        .put("succeeded", products.size())
+                        .put("failed", 0)
+                        .put("results", results)));
+                return null;
+             }
+         }).when(catalogService).addProducts(any(),any());
+
+        Async async = context.async();
+        String body = new JsonObject().put("itemId", "111111").put("name", "productName1").put("price", 10.0).encode() + "\n"
+                + "not json\n"
+                // the last record without a line break
+                + new JsonObject().put("itemId", "222222").put("name", "productName2").put("price", 20.0).encode();
+        vertx.createHttpClient().post(port, "localhost", "/products/batch")
+            .exceptionHandler(context.exceptionHandler())
+            .putHeader("Content-type", "application/x-ndjson")
+            .putHeader("Content-length", Integer.toString(body.length()))
+            .handler(response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                response.bodyHandler(b -> {
+                    JsonObject result = b.toJsonObject();
+                    assertThat(result.getInteger("received"), equalTo(3));
+                    assertThat(result.getInteger("succeeded"), equalTo(2));
+                    assertThat(result.getInteger("failed"), equalTo(1));
+                    assertThat(result.getJsonArray("results").size(), equalTo(3));
+                    async.complete();
+                });
+            })
+            .write(body)
+            .end();
+    }
+
+    @Test
+    public void testAddProductsBatchFailure(TestContext context) throws Exception {
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(1);
+                handler.handle(Future.failedFuture("MongoDB is down"));
+                return null;
+             }
+         }).when(catalogService).addProducts(any(),any());
+
+        Async async = context.async();
+        String body = new JsonObject().put("itemId", "111111").put("name", "productName1").put("price", 10.0).encode() + "\n"
+                + "not json\n";
+        vertx.createHttpClient().post(port, "localhost", "/products/batch")
+            .exceptionHandler(context.exceptionHandler())
+            .putHeader("Content-type", "application/x-ndjson")
+            .putHeader("Content-length", Integer.toString(body.length()))
+            .handler(response -> {
+                assertThat(response.statusCode(), equalTo(207));
+                response.bodyHandler(b -> {
+                    JsonObject result = b.toJsonObject();
+                    assertThat(result.getInteger("succeeded"), equalTo(0));
+                    assertThat(result.getInteger("failed"), equalTo(2));
+                    assertThat(result.getString("error"), equalTo("MongoDB is down"));
+                    async.complete();
+                });
+            })
+            .write(body)
+            .end();
+    }
+
+    @Test
+    public void testSubscribeProductChanges(TestContext context) throws Exception {
+        JsonObject change = new JsonObject()
+                .put("version", 42L)
+                .put("timestamp", System.currentTimeMillis())
+                .put("product", new JsonObject()
+                        .put("itemId", "111111")
+                        .put("name", "productName1")
+                        .put("desc", "productDescription1")
+                        .put("price", new Double(100.0)));
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/products/stream", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                assertThat(response.headers().get("Content-type"), equalTo("text/event-stream"));
+                StringBuilder events = new StringBuilder();
+                response.handler(buffer -> {
+                    events.append(buffer.toString());
+                    if (events.toString().contains("event: product") && events.toString().endsWith("\n\n")) {
+                        assertThat(events.toString(), containsString("id: 42\n"));
+                        assertThat(events.toString(), containsString("\"itemId\":\"111111\""));
+                        async.complete();
+                    }
+                });
+                vertx.eventBus().publish(CatalogService.CHANGES_ADDRESS, change);
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testSubscribeReplaysMissedChanges(TestContext context) throws Exception {
+        JsonObject missed = new JsonObject()
+                .put("version", 41L)
+                .put("timestamp", System.currentTimeMillis())
+                .put("product", new JsonObject()
+                        .put("itemId", "111111")
+                        .put("name", "productName1")
+                        .put("desc", "productDescription1")
+                        .put("price", new Double(100.0)));
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(2);
+                handler.handle(Future.succeededFuture(new JsonObject()
+                        .put("resync", false)
+                        .put("version", 41L)
+                        .put("more", false)
+                        .put("changes", new JsonArray().add(missed))));
+                return null;
+             }
+         }).when(catalogService).getChanges(eq(40L), anyInt(), any());
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/products/stream", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                StringBuilder events = new StringBuilder();
+                response.handler(buffer -> {
+                    events.append(buffer.toString());
+                    if (events.toString().contains("event: product") && events.toString().endsWith("\n\n")) {
+                        assertThat(events.toString(), containsString("id: 41\n"));
+                        async.complete();
+                    }
+                });
+            })
+            .putHeader("Last-Event-ID", "40")
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testMetrics(TestContext context) throws Exception {
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                Handler<AsyncResult<Product>> handler = invocation.getArgument(1);
+                handler.handle(Future.succeededFuture(null));
+                return null;
+             }
+         }).when(catalogService).getProduct(eq("111111"),any());
+
+        Async first = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/product/111111", response -> first.complete())
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+        first.await();
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/metrics", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                response.bodyHandler(body -> {
+                    String metrics = body.toString();
+                    assertThat(metrics, containsString("catalog_http_request_duration_seconds_count{route=\"GET /product/:itemId\"} 1"));
+                    assertThat(metrics, containsString("catalog_eventbus_pending_messages{address=\"catalog-service\"} 0"));
+                    assertThat(metrics, containsString("catalog_http_connections"));
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testHttpServerOptions(TestContext context) {
+        JsonObject config = new JsonObject()
+                .put("catalog.http.compression", true)
+                .put("catalog.http.compression-level", 3)
+                .put("catalog.http.accept-backlog", 512)
+                .put("catalog.http.idle-timeout", 30)
+                .put("catalog.http.http2.max-concurrent-streams", 50L);
+        HttpServerOptions options = ApiVerticle.httpServerOptions(config);
+        assertThat(options.isCompressionSupported(), is(true));
+        assertThat(options.getCompressionLevel(), equalTo(3));
+        assertThat(options.getAcceptBacklog(), equalTo(512));
+        assertThat(options.getIdleTimeout(), equalTo(30));
+        assertThat(options.getInitialSettings().getMaxConcurrentStreams(), equalTo(50L));
+    }
+
+    @Test
+    public void testReadinessHealthCheck(TestContext context) {
         doAnswer(new Answer<Void>() {
             public Void answer(InvocationOnMock invocation){
                 Handler<AsyncResult<String>> handler = invocation.getArgument(0);
@@ -236,7 +649,7 @@ public class ApiVerticleTest {
         }).when(catalogService).ping(any());
 
         Async async = context.async();
-        vertx.createHttpClient().get(port, "localhost", "/health/liveness", response -> {
+        vertx.createHttpClient().get(port, "localhost", "/health/readiness", response -> {
                 assertThat(response.statusCode(), equalTo(200));
                 response.bodyHandler(body -> {
                     JsonObject json = body.toJsonObject();
@@ -249,7 +662,31 @@ public class ApiVerticleTest {
     }
 
     @Test
-    public void testFailingLivenessHealthCheck(TestContext context) {
+    public void testReadinessWhileMongoIsDown(TestContext context) {
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation){
+                Handler<AsyncResult<String>> handler = invocation.getArgument(0);
+                // down, with last known products to answer from
+                handler.handle(Future.succeededFuture("DOWN"));
+                return null;
+             }
+        }).when(catalogService).ping(any());
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/health/readiness", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                response.bodyHandler(body -> {
+                    assertThat(body.toString(), allOf(containsString("\"outcome\":\"UP\""),
+                            containsString("\"mongo\":\"DOWN\"")));
+                    async.complete();
+                }).exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testFailingReadinessHealthCheck(TestContext context) {
         doAnswer(new Answer<Void>() {
             public Void answer(InvocationOnMock invocation){
                 Handler<AsyncResult<Long>> handler = invocation.getArgument(0);
@@ -259,7 +696,7 @@ public class ApiVerticleTest {
          }).when(catalogService).ping(any());
 
         Async async = context.async();
-        vertx.createHttpClient().get(port, "localhost", "/health/liveness", response -> {
+        vertx.createHttpClient().get(port, "localhost", "/health/readiness", response -> {
                 assertThat(response.statusCode(), equalTo(503));
                 async.complete();
             })
@@ -268,7 +705,7 @@ public class ApiVerticleTest {
     }
 
     @Test
-    public void testLivenessHealthCheckTimeOut(TestContext context) {
+    public void testReadinessHealthCheckTimeOut(TestContext context) {
         doAnswer(new Answer<Void>() {
             public Void answer(InvocationOnMock invocation) {
                 Handler<AsyncResult<String>> handler = invocation.getArgument(0);
@@ -284,7 +721,7 @@ public class ApiVerticleTest {
         }).when(catalogService).ping(any());
 
         Async async = context.async();
-        vertx.createHttpClient().get(port, "localhost", "/health/liveness", response -> {
+        vertx.createHttpClient().get(port, "localhost", "/health/readiness", response -> {
                 // HealthCheck Timeout returns a 500 status code
                 assertThat(response.statusCode(), equalTo(500));
                 async.complete();
@@ -294,10 +731,12 @@ public class ApiVerticleTest {
     }
 
     @Test
-    public void testReadinessHealthCheck(TestContext context) {
+    public void testLivenessHealthCheck(TestContext context) {
         Async async = context.async();
-        vertx.createHttpClient().get(port, "localhost", "/health/readiness", response -> {
+        vertx.createHttpClient().get(port, "localhost", "/health/liveness", response -> {
                 assertThat(response.statusCode(), equalTo(200));
+                // whatever the state of MongoDB
+                verify(catalogService, never()).ping(any());
                 async.complete();
             })
             .exceptionHandler(context.exceptionHandler())
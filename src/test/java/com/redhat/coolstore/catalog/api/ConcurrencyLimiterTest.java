@@ -0,0 +1,232 @@
+package com.redhat.coolstore.catalog.api;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+import com.redhat.coolstore.catalog.model.Product;
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+@RunWith(VertxUnitRunner.class)
+public class ConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private ConcurrencyLimiter limiter(int initialLimit, int maxLimit, int maxQueueSize, long queueTimeout,
+            long latencyThreshold) {
+        return new ConcurrencyLimiter(vertx, "GET /test", initialLimit, 1, maxLimit, maxQueueSize, queueTimeout,
+                latencyThreshold, 0.5, 2, new CatalogMetrics());
+    }
+
+    @Test
+    public void testDecreaseOnSlowOrFailedRequests() {
+        ConcurrencyLimiter limiter = limiter(8, 8, 0, 1000, 100);
+        long now = System.nanoTime();
+        limiter.onSample(200 * MILLIS, false, now);
+        assertThat(limiter.limit(), equalTo(4));
+        // a burst of slow requests is a single signal
+        limiter.onSample(200 * MILLIS, false, now + 50 * MILLIS);
+        assertThat(limiter.limit(), equalTo(4));
+        limiter.onSample(10 * MILLIS, true, now + 100 * MILLIS);
+        assertThat(limiter.limit(), equalTo(2));
+        limiter.onSample(200 * MILLIS, false, now + 200 * MILLIS);
+        limiter.onSample(200 * MILLIS, false, now + 300 * MILLIS);
+        // never below the minimum
+        assertThat(limiter.limit(), equalTo(1));
+        // an idle route does not grow its limit
+        limiter.onSample(10 * MILLIS, false, now + 400 * MILLIS);
+        assertThat(limiter.limit(), equalTo(1));
+    }
+
+    private int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        return port;
+    }
+
+    private void listen(TestContext context, Context serverContext, int port, Handler<Router> routes) {
+        Async listening = context.async();
+        serverContext.runOnContext(v -> {
+            Router router = Router.router(vertx);
+            routes.handle(router);
+            vertx.createHttpServer().requestHandler(router::accept).listen(port, context.asyncAssertSuccess(s -> {
+                listening.complete();
+            }));
+        });
+        listening.awaitSuccess(5000);
+    }
+
+    /**
+     * Waits until a condition on the state of the server holds, checking it on the context of the server.
+     */
+    private void await(TestContext context, Context serverContext, BooleanSupplier condition) {
+        Async async = context.async();
+        serverContext.runOnContext(v -> vertx.setPeriodic(5, id -> {
+            if (condition.getAsBoolean()) {
+                vertx.cancelTimer(id);
+                async.complete();
+            }
+        }));
+        async.awaitSuccess(5000);
+    }
+
+    @Test
+    public void testShedOverLimit(TestContext context) throws IOException {
+        int port = freePort();
+        List<RoutingContext> held = new ArrayList<>();
+        Context serverContext = vertx.getOrCreateContext();
+        ConcurrencyLimiter limiter = limiter(1, 2, 1, 10000, 5000);
+        listen(context, serverContext, port, router -> router.get("/test").handler(limiter.limit(held::add)));
+
+        HttpClient client = vertx.createHttpClient();
+        Async async = context.async(3);
+        // admitted, and held
+        client.getNow(port, "localhost", "/test", response -> {
+            context.assertEquals(200, response.statusCode());
+            async.countDown();
+        });
+        await(context, serverContext, () -> held.size() == 1);
+
+        // queued until the held request completes
+        client.getNow(port, "localhost", "/test", response -> {
+            context.assertEquals(200, response.statusCode());
+            serverContext.runOnContext(v -> {
+                // fast requests using the whole limit grow it
+                context.assertEquals(2, limiter.limit());
+                context.assertEquals(0, limiter.inFlight());
+                async.countDown();
+            });
+        });
+        await(context, serverContext, () -> limiter.queued() == 1);
+
+        // over the limit with a full queue, rejected straight away
+        Async shed = context.async();
+        client.getNow(port, "localhost", "/test", response -> {
+            context.assertEquals(503, response.statusCode());
+            context.assertEquals("2", response.getHeader("Retry-After"));
+            shed.complete();
+            async.countDown();
+        });
+        shed.awaitSuccess(5000);
+
+        serverContext.runOnContext(v -> held.get(0).response().end());
+        await(context, serverContext, () -> held.size() == 2);
+        serverContext.runOnContext(v -> held.get(1).response().end());
+    }
+
+    @Test
+    public void testQueueTimeout(TestContext context) throws IOException {
+        int port = freePort();
+        List<RoutingContext> held = new ArrayList<>();
+        Context serverContext = vertx.getOrCreateContext();
+        ConcurrencyLimiter limiter = limiter(1, 1, 1, 100, 5000);
+        listen(context, serverContext, port, router -> router.get("/test").handler(limiter.limit(held::add)));
+
+        HttpClient client = vertx.createHttpClient();
+        client.getNow(port, "localhost", "/test", response -> { });
+        await(context, serverContext, () -> held.size() == 1);
+
+        // the held request never completes, the queued one is rejected once the queue timeout is over
+        Async async = context.async();
+        client.getNow(port, "localhost", "/test", response -> {
+            context.assertEquals(503, response.statusCode());
+            serverContext.runOnContext(v -> {
+                context.assertEquals(0, limiter.queued());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testQueuedBatchRequest(TestContext context) throws IOException {
+        CatalogService catalogService = mock(CatalogService.class);
+        doAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(1);
+            JsonArray results = new JsonArray();
+            products.forEach(p -> results.add(new JsonObject().put("itemId", p.getItemId()).put("status", "ok")));
+            handler.handle(Future.succeededFuture(new JsonObject()
+                    .put("succeeded", products.size())
+                    .put("failed", 0)
+                    .put("results", results)));
+            return null;
+        }).when(catalogService).addProducts(any(), any());
+
+        int port = freePort();
+        List<RoutingContext> held = new ArrayList<>();
+        Context serverContext = vertx.getOrCreateContext();
+        ConcurrencyLimiter limiter = limiter(1, 1, 1, 10000, 5000);
+        listen(context, serverContext, port, router -> {
+            router.get("/test").handler(limiter.limit(held::add));
+            router.post("/products/batch").handler(limiter.limit(
+                    new ProductBatchHandler(catalogService, 10, ProductBatchHandler.DEFAULT_MAX_BODY_SIZE)));
+        });
+
+        HttpClient client = vertx.createHttpClient();
+        client.getNow(port, "localhost", "/test", response -> { });
+        await(context, serverContext, () -> held.size() == 1);
+
+        // the whole body arrives while the request is queued
+        Async async = context.async();
+        client.post(port, "localhost", "/products/batch", response -> {
+            context.assertEquals(200, response.statusCode());
+            response.bodyHandler(body -> {
+                JsonObject result = body.toJsonObject();
+                context.assertEquals(2, result.getInteger("received"));
+                context.assertEquals(2, result.getInteger("succeeded"));
+                serverContext.runOnContext(v -> {
+                    context.assertEquals(0, limiter.inFlight());
+                    async.complete();
+                });
+            });
+        })
+        .putHeader("Content-type", "application/x-ndjson")
+        .end("{\"itemId\":\"1\",\"name\":\"a\",\"price\":1.0}\n{\"itemId\":\"2\",\"name\":\"b\",\"price\":2.0}\n");
+        await(context, serverContext, () -> limiter.queued() == 1);
+
+        serverContext.runOnContext(v -> held.get(0).response().end());
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.redhat.coolstore.catalog.api;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+import com.redhat.coolstore.catalog.verticle.service.MongoTestBase;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class ProductExporterTest extends MongoTestBase {
+
+    private Vertx vertx;
+    private Integer port;
+
+    @Before
+    public void setup(TestContext context) throws IOException {
+        vertx = Vertx.vertx();
+        vertx.exceptionHandler(context.exceptionHandler());
+        mongoClient = MongoClient.createNonShared(vertx, getConfig());
+        Async async = context.async();
+        dropCollection(mongoClient, "products", async, context);
+        async.await(10000);
+
+        ServerSocket socket = new ServerSocket(0);
+        port = socket.getLocalPort();
+        socket.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mongoClient.close();
+        vertx.close();
+    }
+
+    private void saveProducts(TestContext context, int total) {
+        Async saveAsync = context.async(total);
+        for (int i = 0; i < total; i++) {
+            JsonObject json = new JsonObject()
+                    .put("_id", "00000" + i)
+                    .put("itemId", "00000" + i)
+                    .put("name", "productName" + i)
+                    .put("desc", "productDescription" + i + ", \"quoted\"")
+                    .put("price", new Double(100.0))
+                    .put("version", 1L);
+            mongoClient.save("products", json, ar -> {
+                if (ar.failed()) {
+                    context.fail();
+                }
+                saveAsync.countDown();
+            });
+        }
+        saveAsync.await();
+    }
+
+    private void listen(TestContext context, ProductExporter.Format format, boolean gzip, long total) {
+        ProductExporter exporter = new ProductExporter(CatalogService.create(vertx, getConfig(), mongoClient, mongoClient), 2);
+        Async listenAsync = context.async();
+        vertx.createHttpServer()
+            .requestHandler(request -> exporter.export(request.response(), format, gzip, ar -> {
+                if (ar.failed()) {
+                    context.fail(ar.cause());
+                } else {
+                    assertThat(ar.result(), equalTo(total));
+                }
+            }))
+            .listen(port, context.asyncAssertSuccess(s -> listenAsync.complete()));
+        listenAsync.await();
+    }
+
+    @Test
+    public void testExportNdjson(TestContext context) throws Exception {
+        int total = 5;
+        saveProducts(context, total);
+        listen(context, ProductExporter.Format.NDJSON, false, total);
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/products/export", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                assertThat(response.headers().get("Content-type"), equalTo("application/x-ndjson"));
+                response.bodyHandler(body -> {
+                    String[] lines = body.toString().split("\n");
+                    assertThat(lines.length, equalTo(total));
+                    // only the product fields
+                    assertThat(new JsonObject(lines[0]), equalTo(new JsonObject()
+                            .put("itemId", "000000")
+                            .put("name", "productName0")
+                            .put("desc", "productDescription0, \"quoted\"")
+                            .put("price", 100.0)));
+                    assertThat(new JsonObject(lines[total - 1]).getString("itemId"), equalTo("000004"));
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testExportGzippedCsv(TestContext context) throws Exception {
+        int total = 4;
+        saveProducts(context, total);
+        listen(context, ProductExporter.Format.CSV, true, total);
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/products/export?format=csv", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                assertThat(response.headers().get("Content-Encoding"), equalTo("gzip"));
+                response.bodyHandler(body -> {
+                    String[] lines = gunzip(body.getBytes()).split("\r\n");
+                    assertThat(lines.length, equalTo(total + 1));
+                    assertThat(lines[0], equalTo("itemId,name,desc,price"));
+                    assertThat(lines[1], equalTo("000000,productName0,\"productDescription0, \"\"quoted\"\"\",100.0"));
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testAppendCsv() {
+        StringBuilder csv = new StringBuilder();
+        ProductExporter.appendCsv(csv, new JsonObject()
+                .put("itemId", "1")
+                .put("name", "two\nlines")
+                .put("price", 2.5));
+        assertThat(csv.toString(), equalTo("1,\"two\nlines\",,2.5\r\n"));
+    }
+
+    private String gunzip(byte[] bytes) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.redhat.coolstore.catalog.api;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.redhat.coolstore.catalog.verticle.service.CatalogService;
+import com.redhat.coolstore.catalog.verticle.service.MongoTestBase;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class ProductStreamerTest extends MongoTestBase {
+
+    private Vertx vertx;
+    private Integer port;
+
+    @Before
+    public void setup(TestContext context) throws IOException {
+        vertx = Vertx.vertx();
+        vertx.exceptionHandler(context.exceptionHandler());
+        mongoClient = MongoClient.createNonShared(vertx, getConfig());
+        Async async = context.async();
+        dropCollection(mongoClient, "products", async, context);
+        async.await(10000);
+
+        ServerSocket socket = new ServerSocket(0);
+        port = socket.getLocalPort();
+        socket.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mongoClient.close();
+        vertx.close();
+    }
+
+    @Test
+    public void testStreamProducts(TestContext context) throws Exception {
+        int total = 5;
+        Async saveAsync = context.async(total);
+        for (int i = 0; i < total; i++) {
+            JsonObject json = new JsonObject()
+                    .put("itemId", "00000" + i)
+                    .put("name", "productName" + i)
+                    .put("desc", "productDescription" + i)
+                    .put("price", new Double(100.0));
+            mongoClient.save("products", json, ar -> {
+                if (ar.failed()) {
+                    context.fail();
+                }
+                saveAsync.countDown();
+            });
+        }
+        saveAsync.await();
+
+        ProductStreamer streamer = new ProductStreamer(CatalogService.create(vertx, getConfig(), mongoClient, mongoClient), 2);
+        Async listenAsync = context.async();
+        vertx.createHttpServer()
+            .requestHandler(request -> streamer.stream(request.response(), ar -> {
+                if (ar.failed()) {
+                    context.fail(ar.cause());
+                } else {
+                    assertThat(ar.result(), equalTo((long) total));
+                }
+            }))
+            .listen(port, context.asyncAssertSuccess(s -> listenAsync.complete()));
+        listenAsync.await();
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/products", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                assertThat(response.headers().get("Transfer-Encoding"), equalTo("chunked"));
+                response.bodyHandler(body -> {
+                    JsonArray json = body.toJsonArray();
+                    assertThat(json.size(), equalTo(total));
+                    assertThat(json.getJsonObject(0).getString("itemId"), equalTo("000000"));
+                    assertThat(json.getJsonObject(total - 1).getString("itemId"), equalTo("000004"));
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+    @Test
+    public void testStreamEmptyCatalog(TestContext context) throws Exception {
+        ProductStreamer streamer = new ProductStreamer(CatalogService.create(vertx, getConfig(), mongoClient, mongoClient), 2);
+        Async listenAsync = context.async();
+        vertx.createHttpServer()
+            .requestHandler(request -> streamer.stream(request.response(), ar -> {}))
+            .listen(port, context.asyncAssertSuccess(s -> listenAsync.complete()));
+        listenAsync.await();
+
+        Async async = context.async();
+        vertx.createHttpClient().get(port, "localhost", "/products", response -> {
+                assertThat(response.statusCode(), equalTo(200));
+                response.bodyHandler(body -> {
+                    assertThat(body.toJsonArray().size(), equalTo(0));
+                    async.complete();
+                })
+                .exceptionHandler(context.exceptionHandler());
+            })
+            .exceptionHandler(context.exceptionHandler())
+            .end();
+    }
+
+}
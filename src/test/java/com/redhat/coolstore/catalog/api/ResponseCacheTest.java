@@ -0,0 +1,58 @@
+package com.redhat.coolstore.catalog.api;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+
+public class ResponseCacheTest {
+
+    private long time = 0;
+
+    private ResponseCache cache(int maxSize, long ttl) {
+        return new ResponseCache(maxSize, ttl, false) {
+            @Override
+            protected long now() {
+                return time;
+            }
+        };
+    }
+
+    @Test
+    public void testExpiry() {
+        ResponseCache cache = cache(10, 1000);
+        cache.putProduct("111111", Buffer.buffer("{}"), cache.generation());
+        cache.putProducts(Buffer.buffer("[]"), cache.generation());
+        time = 999;
+        assertThat(cache.getProduct("111111"), notNullValue());
+        assertThat(cache.getProducts(), notNullValue());
+        time = 1000;
+        assertThat(cache.getProduct("111111"), nullValue());
+        assertThat(cache.getProducts(), nullValue());
+    }
+
+    @Test
+    public void testInvalidation() {
+        ResponseCache cache = cache(10, 1000);
+        long generation = cache.generation();
+        cache.putProduct("111111", Buffer.buffer("{}"), generation);
+        cache.invalidate("111111");
+        assertThat(cache.getProduct("111111"), nullValue());
+        // computed before the change, not cached
+        cache.putProduct("111111", Buffer.buffer("{}"), generation);
+        assertThat(cache.getProduct("111111"), nullValue());
+    }
+
+    @Test
+    public void testGzipEtag() {
+        ResponseCache.Entry entry = new ResponseCache.Entry(Buffer.buffer("{}"), true);
+        assertThat(entry.gzipEtag(), not(entry.etag()));
+        assertThat(entry.gzipEtag(), endsWith("-gzip\""));
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.redhat.coolstore.catalog.search;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+public class PriceIndexTest {
+
+    private Product product(String itemId, double price) {
+        Product product = new Product();
+        product.setItemId(itemId);
+        product.setName("name" + itemId);
+        product.setPrice(price);
+        return product;
+    }
+
+    private List<String> itemIds(List<Product> products) {
+        return products.stream().map(Product::getItemId).collect(Collectors.toList());
+    }
+
+    private PriceIndex index() {
+        PriceIndex index = new PriceIndex();
+        index.load(Arrays.asList(product("1", 30.0), product("2", 10.0), product("3", 20.0),
+                product("4", 20.0), product("5", 40.0)));
+        return index;
+    }
+
+    @Test
+    public void testRange() {
+        PriceIndex index = index();
+        assertThat(itemIds(index.range(15.0, 30.0, 10, false)), equalTo(Arrays.asList("3", "4", "1")));
+        assertThat(itemIds(index.range(20.0, 20.0, 10, false)), equalTo(Arrays.asList("3", "4")));
+        assertThat(itemIds(index.range(41.0, 50.0, 10, false)), equalTo(Collections.<String>emptyList()));
+        assertThat(itemIds(index.range(30.0, 20.0, 10, false)), equalTo(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testTopN() {
+        PriceIndex index = index();
+        assertThat(itemIds(index.range(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 2, false)),
+                equalTo(Arrays.asList("2", "3")));
+        assertThat(itemIds(index.range(Double.NEGATIVE_INFINITY, 35.0, 2, true)),
+                equalTo(Arrays.asList("1", "4")));
+    }
+
+    @Test
+    public void testUpdate() {
+        PriceIndex index = index();
+        index.put(product("5", 5.0));
+        index.put(product("6", 25.0));
+        index.remove("3");
+        assertThat(itemIds(index.range(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 10, false)),
+                equalTo(Arrays.asList("5", "2", "4", "6", "1")));
+        index.put(product("7", 15.0));
+        assertThat(itemIds(index.range(10.0, 20.0, 10, false)), equalTo(Arrays.asList("2", "7", "4")));
+        assertThat(index.size(), equalTo(6));
+    }
+
+    @Test
+    public void testLoadKeepsNewerProducts() {
+        PriceIndex index = new PriceIndex();
+        index.put(product("1", 50.0));
+        index.load(Arrays.asList(product("1", 30.0), product("2", 10.0)));
+        assertThat(itemIds(index.range(0.0, 40.0, 10, false)), equalTo(Arrays.asList("2")));
+        assertThat(index.size(), equalTo(2));
+    }
+
+    @Test
+    public void testLoadDuplicateItemIds() {
+        PriceIndex index = new PriceIndex();
+        index.load(Arrays.asList(product("1", 30.0), product("2", 10.0), product("1", 20.0)));
+        assertThat(index.size(), equalTo(2));
+        assertThat(itemIds(index.range(0.0, 100.0, 10, false)), equalTo(Arrays.asList("2", "1")));
+        // the product is only once in the index, so it moves rather than leaving a copy behind
+        index.put(product("1", 5.0));
+        assertThat(itemIds(index.range(0.0, 100.0, 10, false)), equalTo(Arrays.asList("1", "2")));
+        index.remove("1");
+        assertThat(itemIds(index.range(0.0, 100.0, 10, false)), equalTo(Arrays.asList("2")));
+        assertThat(index.size(), equalTo(1));
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.redhat.coolstore.catalog.search;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+public class ProductSearchIndexTest {
+
+    private Product product(String itemId, String name, String desc) {
+        Product product = new Product();
+        product.setItemId(itemId);
+        product.setName(name);
+        product.setDesc(desc);
+        product.setPrice(10.0);
+        return product;
+    }
+
+    private List<String> itemIds(List<Product> products) {
+        return products.stream().map(Product::getItemId).collect(Collectors.toList());
+    }
+
+    private ProductSearchIndex index() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.put(product("1", "Red Fedora", "Official Red Hat Fedora"));
+        index.put(product("2", "Forge Laptop Sticker", "JBoss Community Forge Project Sticker"));
+        index.put(product("3", "Solid Performance Polo", "Moisture-wicking, antimicrobial polo shirt"));
+        index.put(product("4", "Ogio Caliber Polo", "Moisture-wicking 100% polyester, with a red collar"));
+        return index;
+    }
+
+    @Test
+    public void testTokenize() {
+        assertThat(Arrays.asList(ProductSearchIndex.tokenize("Moisture-wicking, Cr\u00e8me 100%")),
+                equalTo(Arrays.asList("moisture", "wicking", "creme", "100")));
+    }
+
+    @Test
+    public void testSearch() {
+        ProductSearchIndex index = index();
+        assertThat(itemIds(index.search("sticker", 10)), equalTo(Arrays.asList("2")));
+        // all the tokens must match
+        assertThat(itemIds(index.search("polo moisture", 10)), equalTo(Arrays.asList("3", "4")));
+        assertThat(itemIds(index.search("polo fedora", 10)), equalTo(Collections.<String>emptyList()));
+        assertThat(itemIds(index.search("", 10)), equalTo(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testRanking() {
+        ProductSearchIndex index = index();
+        // a match on the name ranks above a match on the description
+        assertThat(itemIds(index.search("red", 10)), equalTo(Arrays.asList("1", "4")));
+        assertThat(itemIds(index.search("red", 1)), equalTo(Arrays.asList("1")));
+    }
+
+    @Test
+    public void testTypeahead() {
+        ProductSearchIndex index = index();
+        assertThat(itemIds(index.search("fed", 10)), equalTo(Arrays.asList("1")));
+        assertThat(itemIds(index.search("moisture po", 10)), equalTo(Arrays.asList("3", "4")));
+        // only the last token is a prefix
+        assertThat(itemIds(index.search("po moisture", 10)), equalTo(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testUpdate() {
+        ProductSearchIndex index = index();
+        index.put(product("1", "Blue Fedora", "Official Fedora"));
+        assertThat(itemIds(index.search("blue", 10)), equalTo(Arrays.asList("1")));
+        assertThat(itemIds(index.search("red", 10)), equalTo(Arrays.asList("4")));
+        assertThat(index.size(), equalTo(4));
+
+        index.remove("2");
+        assertThat(itemIds(index.search("sticker", 10)), equalTo(Collections.<String>emptyList()));
+        index.put(product("5", "Sticker", null));
+        assertThat(itemIds(index.search("sticker", 10)), equalTo(Arrays.asList("5")));
+        assertThat(index.size(), equalTo(4));
+    }
+
+    @Test
+    public void testLoadKeepsNewerProducts() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.put(product("1", "Blue Fedora", null));
+        index.load(Arrays.asList(product("1", "Red Fedora", null), product("2", "Forge Laptop Sticker", null)));
+        assertThat(itemIds(index.search("blue", 10)), equalTo(Arrays.asList("1")));
+        assertThat(itemIds(index.search("red", 10)), equalTo(Collections.<String>emptyList()));
+        assertThat(index.size(), equalTo(2));
+    }
+
+    @Test
+    public void testShortPrefixOnLargeCatalog() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        for (int i = 0; i < 10000; i++) {
+            index.put(product(String.format("%06d", i), "Product name " + i,
+                    "A description of product " + i + " long enough to be representative of the catalog"));
+        }
+        // every product matches with the same score, ties are broken by itemId
+        assertThat(itemIds(index.search("p", 3)), equalTo(Arrays.asList("000000", "000001", "000002")));
+        // the exact term ranks above the longer ones it is a prefix of
+        assertThat(itemIds(index.search("product 12", 10)).get(0), equalTo("000012"));
+        assertThat(index.search("product 12", 1000).size(), equalTo(111));
+        // the scores of the previous queries do not leak into the next one
+        index.put(product("010000", "Fedora", null));
+        assertThat(itemIds(index.search("f", 10)), equalTo(Arrays.asList("010000")));
+        assertThat(itemIds(index.search("product 9999", 10)), equalTo(Arrays.asList("009999")));
+    }
+
+}
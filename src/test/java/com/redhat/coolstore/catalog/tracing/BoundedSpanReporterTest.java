@@ -0,0 +1,93 @@
+package com.redhat.coolstore.catalog.tracing;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+
+import io.jaegertracing.Span;
+import io.jaegertracing.Tracer;
+import io.jaegertracing.exceptions.SenderException;
+import io.jaegertracing.samplers.ConstSampler;
+import io.jaegertracing.senders.Sender;
+
+public class BoundedSpanReporterTest {
+
+    private static class RecordingSender implements Sender {
+
+        private final List<Span> sent = new CopyOnWriteArrayList<>();
+
+        private final boolean failing;
+
+        private RecordingSender(boolean failing) {
+            this.failing = failing;
+        }
+
+        @Override
+        public int append(Span span) throws SenderException {
+            if (failing) {
+                throw new SenderException("Collector unavailable", null, 1);
+            }
+            sent.add(span);
+            return 0;
+        }
+
+        @Override
+        public int flush() throws SenderException {
+            return 0;
+        }
+
+        @Override
+        public int close() throws SenderException {
+            return 0;
+        }
+    }
+
+    private Tracer tracer(BoundedSpanReporter reporter) {
+        return new Tracer.Builder("test")
+                .withReporter(reporter)
+                .withSampler(new ConstSampler(true))
+                .build();
+    }
+
+    @Test
+    public void testReport() {
+        CatalogMetrics metrics = new CatalogMetrics();
+        RecordingSender sender = new RecordingSender(false);
+        BoundedSpanReporter reporter = new BoundedSpanReporter(sender, 100, 2, 10, metrics);
+        Tracer tracer = tracer(reporter);
+        for (int i = 0; i < 3; i++) {
+            tracer.buildSpan("operation" + i).start().finish();
+        }
+        tracer.close();
+        assertThat(sender.sent.size(), equalTo(3));
+        assertThat(metrics.scrape(), containsString("catalog_tracing_spans_reported_total 3\n"));
+    }
+
+    @Test
+    public void testDropWhenSendFails() {
+        CatalogMetrics metrics = new CatalogMetrics();
+        BoundedSpanReporter reporter = new BoundedSpanReporter(new RecordingSender(true), 100, 10, 10, metrics);
+        Tracer tracer = tracer(reporter);
+        tracer.buildSpan("operation").start().finish();
+        tracer.close();
+        assertThat(metrics.scrape(), containsString("catalog_tracing_spans_dropped_total{reason=\"send_failed\"} 1\n"));
+    }
+
+    @Test
+    public void testDropWhenClosed() {
+        CatalogMetrics metrics = new CatalogMetrics();
+        BoundedSpanReporter reporter = new BoundedSpanReporter(new RecordingSender(false), 100, 10, 10, metrics);
+        Tracer tracer = tracer(reporter);
+        reporter.close();
+        tracer.buildSpan("operation").start().finish();
+        assertThat(metrics.scrape(), containsString("catalog_tracing_spans_dropped_total{reason=\"queue_full\"} 1\n"));
+    }
+
+}
@@ -7,6 +7,9 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -17,6 +20,7 @@ import org.junit.runner.RunWith;
 
 import com.redhat.coolstore.catalog.model.Product;
 
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.mongo.MongoClient;
@@ -56,7 +60,7 @@ public class CatalogServiceTest extends MongoTestBase {
         product.setDesc("productDescription");
         product.setPrice(100.0);
 
-        CatalogService service = new CatalogServiceImpl(vertx, getConfig(), mongoClient);
+        CatalogService service = CatalogService.create(vertx, getConfig(), mongoClient, mongoClient);
 
         Async async = context.async();
 
@@ -77,6 +81,42 @@ public class CatalogServiceTest extends MongoTestBase {
         });
     }
 
+    @Test
+    public void testAddProducts(TestContext context) throws Exception {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Product product = new Product();
+            product.setItemId("00000" + i);
+            product.setName("productName" + i);
+            product.setDesc("productDescription" + i);
+            product.setPrice(100.0);
+            products.add(product);
+        }
+
+        CatalogService service = CatalogService.create(vertx, getConfig().put("catalog.bulk.batch-size", 2),
+                mongoClient, mongoClient);
+
+        Async async = context.async();
+
+        service.addProducts(products, ar -> {
+            if (ar.failed()) {
+                context.fail(ar.cause().getMessage());
+            } else {
+                assertThat(ar.result().getInteger("succeeded"), equalTo(5));
+                assertThat(ar.result().getInteger("failed"), equalTo(0));
+                assertThat(ar.result().getJsonArray("results").size(), equalTo(5));
+                mongoClient.count("products", new JsonObject(), ar1 -> {
+                    if (ar1.failed()) {
+                        context.fail(ar1.cause().getMessage());
+                    } else {
+                        assertThat(ar1.result(), equalTo(5L));
+                        async.complete();
+                    }
+                });
+            }
+        });
+    }
+
     @Test
     public void testGetProducts(TestContext context) throws Exception {
         Async saveAsync = context.async(2);
@@ -110,7 +150,7 @@ public class CatalogServiceTest extends MongoTestBase {
 
         saveAsync.await();
 
-        CatalogService service = new CatalogServiceImpl(vertx, getConfig(), mongoClient);
+        CatalogService service = CatalogService.create(vertx, getConfig(), mongoClient, mongoClient);
 
         Async async = context.async();
 
@@ -161,7 +201,7 @@ public class CatalogServiceTest extends MongoTestBase {
 
         saveAsync.await();
 
-        CatalogService service = new CatalogServiceImpl(vertx, getConfig(), mongoClient);
+        CatalogService service = CatalogService.create(vertx, getConfig(), mongoClient, mongoClient);
 
         Async async = context.async();
 
@@ -177,6 +217,66 @@ public class CatalogServiceTest extends MongoTestBase {
         });
     }
 
+    @Test
+    public void testGetProductWithoutItemIdFallback(TestContext context) throws Exception {
+        Async saveAsync = context.async();
+        // a generated _id, as for the documents not written through the service
+        mongoClient.save("products", new JsonObject().put("itemId", "111111").put("name", "productName1"), ar -> {
+            if (ar.failed()) {
+                context.fail();
+            }
+            saveAsync.complete();
+        });
+        saveAsync.await();
+
+        CatalogService service = CatalogService.create(vertx,
+                getConfig().put("catalog.mongo.itemid-fallback", false), mongoClient, mongoClient);
+
+        Async async = context.async();
+        service.getProduct("111111", ar -> {
+            assertThat(ar.succeeded(), equalTo(true));
+            assertThat(ar.result(), nullValue());
+            service.getProductsByIds(Arrays.asList("111111"), ar1 -> {
+                assertThat(ar1.result().size(), equalTo(0));
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testGetProductsByIds(TestContext context) throws Exception {
+        Async saveAsync = context.async(3);
+        for (String itemId : Arrays.asList("111111", "222222", "333333")) {
+            JsonObject json = new JsonObject()
+                    .put("itemId", itemId)
+                    .put("name", "productName" + itemId)
+                    .put("desc", "productDescription")
+                    .put("price", new Double(100.0));
+            mongoClient.save("products", json, ar -> {
+                if (ar.failed()) {
+                    context.fail();
+                }
+                saveAsync.countDown();
+            });
+        }
+        saveAsync.await();
+
+        CatalogService service = CatalogService.create(vertx, getConfig(), mongoClient, mongoClient);
+
+        Async async = context.async();
+
+        service.getProductsByIds(Arrays.asList("333333", "999999", "111111"), ar -> {
+            if (ar.failed()) {
+                context.fail(ar.cause().getMessage());
+            } else {
+                assertThat(ar.result().size(), equalTo(2));
+                assertThat(ar.result().get(0).getItemId(), equalTo("333333"));
+                assertThat(ar.result().get(1).getItemId(), equalTo("111111"));
+                async.complete();
+            }
+        });
+    }
+
     @Test
     public void testGetNonExistingProduct(TestContext context) throws Exception {
         Async saveAsync = context.async(1);
@@ -196,7 +296,7 @@ public class CatalogServiceTest extends MongoTestBase {
 
         saveAsync.await();
 
-        CatalogService service = new CatalogServiceImpl(vertx, getConfig(), mongoClient);
+        CatalogService service = CatalogService.create(vertx, getConfig(), mongoClient, mongoClient);
 
         Async async = context.async();
 
@@ -210,9 +310,370 @@ public class CatalogServiceTest extends MongoTestBase {
         });
     }
 
+    @Test
+    public void testGetCachedProduct(TestContext context) throws Exception {
+        String itemId = "999999";
+        Product product = new Product();
+        product.setItemId(itemId);
+        product.setName("productName");
+        product.setDesc("productDescription");
+        product.setPrice(100.0);
+
+        CatalogService service = CatalogService.create(vertx, getConfig(), mongoClient, mongoClient);
+
+        Async saveAsync = context.async();
+        service.addProduct(product, ar -> {
+            if (ar.failed()) {
+                context.fail(ar.cause().getMessage());
+            }
+            saveAsync.complete();
+        });
+        saveAsync.await();
+
+        Async dropAsync = context.async();
+        dropCollection(mongoClient, "products", dropAsync, context);
+        dropAsync.await(10000);
+
+        Async async = context.async();
+        service.getProduct(itemId, ar -> {
+            if (ar.failed()) {
+                context.fail(ar.cause().getMessage());
+            } else {
+                assertThat(ar.result(), notNullValue());
+                assertThat(ar.result().getName(), equalTo("productName"));
+                async.complete();
+            }
+        });
+    }
+
+    @Test
+    public void testLocalProxy(TestContext context) throws Exception {
+        vertx.eventBus().registerCodec(new LocalMessageCodec());
+        Async deployAsync = context.async();
+        vertx.deployVerticle(new CatalogVerticle(), new DeploymentOptions().setConfig(getConfig()),
+                context.asyncAssertSuccess(id -> deployAsync.complete()));
+        deployAsync.await();
+
+        Product product = new Product();
+        product.setItemId("999999");
+        product.setName("productName");
+        product.setDesc("productDescription");
+        product.setPrice(100.0);
+
+        CatalogService service = CatalogService.createLocalProxy(vertx);
+
+        Async async = context.async();
+        service.addProduct(product, ar -> {
+            if (ar.failed()) {
+                context.fail(ar.cause().getMessage());
+            } else {
+                service.getProduct("999999", ar1 -> {
+                    if (ar1.failed()) {
+                        context.fail(ar1.cause().getMessage());
+                    } else {
+                        assertThat(ar1.result(), notNullValue());
+                        assertThat(ar1.result().getName(), equalTo("productName"));
+                        async.complete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testGetChanges(TestContext context) throws Exception {
+        Product product = new Product();
+        product.setItemId("999999");
+        product.setName("productName");
+        product.setDesc("productDescription");
+        product.setPrice(100.0);
+
+        CatalogServiceImpl service = new CatalogServiceImpl(vertx, getConfig(), mongoClient, mongoClient);
+
+        Async async = context.async();
+        JsonObject query = new JsonObject().put("_id", CatalogServiceImpl.CATALOG_COUNTER);
+        mongoClient.findOne(CatalogServiceImpl.COUNTERS, query, null, ar -> {
+            // the change log of the service is not started, changes are read from the database
+            long since = ar.result() != null ? ar.result().getLong("version") : 0L;
+            service.addProduct(product, ar1 -> {
+                if (ar1.failed()) {
+                    context.fail(ar1.cause().getMessage());
+                    return;
+                }
+                service.getChanges(since, 10, ar2 -> {
+                    if (ar2.failed()) {
+                        context.fail(ar2.cause().getMessage());
+                        return;
+                    }
+                    JsonObject result = ar2.result();
+                    assertThat(result.getBoolean("resync"), equalTo(false));
+                    assertThat(result.getLong("version"), equalTo(since + 1));
+                    assertThat(result.getJsonArray("changes").size(), equalTo(1));
+                    JsonObject change = result.getJsonArray("changes").getJsonObject(0);
+                    assertThat(change.getJsonObject("product").getString("itemId"), equalTo("999999"));
+                    service.getChanges(since + 100, 10, ar3 -> {
+                        assertThat(ar3.result().getBoolean("resync"), equalTo(true));
+                        assertThat(ar3.result().getLong("version"), equalTo(since + 1));
+                        async.complete();
+                    });
+                });
+            });
+        });
+    }
+
+    @Test
+    public void testGetChangesWrittenByAnotherInstance(TestContext context) throws Exception {
+        CatalogServiceImpl other = new CatalogServiceImpl(vertx, getConfig(), mongoClient, mongoClient);
+        CatalogServiceImpl service = new CatalogServiceImpl(vertx, getConfig(), mongoClient, mongoClient);
+        Product first = new Product();
+        first.setItemId("111111");
+        first.setName("productName1");
+        Product second = new Product();
+        second.setItemId("222222");
+        second.setName("productName2");
+
+        Async async = context.async();
+        service.readVersion(ar -> {
+            long since = ar.result();
+            // written by another instance, its change event never reaches the service
+            other.addProduct(first, ar1 -> {
+                service.addProduct(second, ar2 -> {
+                    service.onProductChange(new JsonObject()
+                            .put("version", since + 2)
+                            .put("timestamp", System.currentTimeMillis())
+                            .put("product", second.toJson()));
+                    service.getChanges(since, 10, ar3 -> {
+                        JsonObject result = ar3.result();
+                        assertThat(result.getJsonArray("changes").size(), equalTo(2));
+                        assertThat(result.getJsonArray("changes").getJsonObject(0).getJsonObject("product")
+                                .getString("itemId"), equalTo("111111"));
+                        assertThat(result.getLong("version"), equalTo(since + 2));
+                        async.complete();
+                    });
+                });
+            });
+        });
+    }
+
+    @Test
+    public void testStaleReads(TestContext context) throws Exception {
+        Async saveAsync = context.async();
+        JsonObject json = new JsonObject()
+                .put("itemId", "111111")
+                .put("name", "productName1")
+                .put("desc", "productDescription1")
+                .put("price", new Double(100.0));
+        mongoClient.save("products", json, ar -> {
+            if (ar.failed()) {
+                context.fail();
+            }
+            saveAsync.complete();
+        });
+        saveAsync.await();
+
+        // a client of its own, closed to make MongoDB unavailable to the service
+        MongoClient client = MongoClient.createNonShared(vertx, getConfig());
+        JsonObject config = getConfig()
+                .put("catalog.cache.enabled", false)
+                .put("catalog.mongo.breaker.failure-threshold", 1);
+        CatalogService service = CatalogService.create(vertx, config, client, client);
+
+        Async async = context.async();
+        service.getProducts(ar -> {
+            assertThat(ar.succeeded(), equalTo(true));
+            client.close();
+            service.getProduct("111111", ar1 -> {
+                // fails, and opens the breaker
+                assertThat(ar1.succeeded(), equalTo(false));
+                assertThat(CatalogHealth.get(vertx).servingStale(), equalTo(true));
+                service.getProducts(ar2 -> {
+                    assertThat(ar2.succeeded(), equalTo(true));
+                    assertThat(ar2.result().size(), equalTo(1));
+                    service.getProduct("111111", ar3 -> {
+                        assertThat(ar3.result().getName(), equalTo("productName1"));
+                        // the whole catalog is known, so an unknown product is not found rather than failed
+                        service.getProduct("222222", ar4 -> {
+                            assertThat(ar4.succeeded(), equalTo(true));
+                            assertThat(ar4.result(), nullValue());
+                            async.complete();
+                        });
+                    });
+                });
+            });
+        });
+    }
+
+    private void awaitDown(TestContext context, MongoHealthProbe probe) {
+        Async down = context.async();
+        vertx.setPeriodic(10, id -> {
+            if (probe.status() == MongoHealthProbe.Status.DOWN) {
+                vertx.cancelTimer(id);
+                down.complete();
+            }
+        });
+        down.await(10000);
+    }
+
+    @Test
+    public void testPingWhileServingStaleReads(TestContext context) throws Exception {
+        Async saveAsync = context.async();
+        mongoClient.save("products", new JsonObject().put("_id", "111111").put("itemId", "111111")
+                .put("name", "productName1").put("price", 100.0), ar -> {
+            if (ar.failed()) {
+                context.fail();
+            }
+            saveAsync.complete();
+        });
+        saveAsync.await();
+
+        // writes and health pings go to a server which never answers, reads to the test server
+        MongoClient down = MongoClient.createNonShared(vertx,
+                new JsonObject().put("connection_string", "mongodb://localhost:1"));
+        JsonObject config = getConfig()
+                .put("catalog.cache.enabled", false)
+                .put("catalog.mongo.breaker.failure-threshold", 1)
+                .put("catalog.mongo.breaker.call-timeout", 200)
+                .put("catalog.health.probe-interval", 20)
+                .put("catalog.health.down-latency", 100)
+                .put("catalog.health.failure-threshold", 1);
+        CatalogServiceImpl service = new CatalogServiceImpl(vertx, config, down, mongoClient);
+        CatalogServiceImpl empty = new CatalogServiceImpl(vertx, config, down, mongoClient);
+
+        Async loaded = context.async();
+        service.getProducts(ar -> {
+            context.assertTrue(ar.succeeded());
+            loaded.complete();
+        });
+        loaded.await(10000);
+
+        vertx.runOnContext(v -> {
+            service.probe().start();
+            empty.probe().start();
+        });
+        awaitDown(context, service.probe());
+        awaitDown(context, empty.probe());
+
+        Async async = context.async();
+        Product product = new Product();
+        product.setItemId("222222");
+        product.setName("productName2");
+        service.addProduct(product, ar -> {
+            // times out, and opens the breaker
+            context.assertTrue(ar.failed());
+            context.assertTrue(CatalogHealth.get(vertx).servingStale());
+            service.ping(ar1 -> {
+                // still ready, the last known products are served
+                context.assertTrue(ar1.succeeded());
+                context.assertEquals("DOWN", ar1.result());
+                empty.ping(ar2 -> {
+                    // nothing to serve
+                    context.assertTrue(ar2.failed());
+                    service.probe().stop();
+                    empty.probe().stop();
+                    down.close();
+                    async.complete();
+                });
+            });
+        });
+    }
+
+    @Test
+    public void testSnapshot(TestContext context) throws Exception {
+        // no write in progress to wait for
+        JsonObject config = getConfig().put("catalog.changes.grace-period", 0);
+        CatalogServiceImpl service = new CatalogServiceImpl(vertx, config, mongoClient, mongoClient);
+        Product product1 = new Product();
+        product1.setItemId("111111");
+        product1.setName("productName1");
+        product1.setPrice(100.0);
+        Product product2 = new Product();
+        product2.setItemId("222222");
+        product2.setName("productName2");
+        product2.setDesc("productDescription2");
+        product2.setPrice(200.0);
+
+        Async async = context.async();
+        service.addProducts(Arrays.asList(product1, product2), ar -> {
+            assertThat(ar.succeeded(), equalTo(true));
+            service.snapshot(ar1 -> {
+                assertThat(ar1.succeeded(), equalTo(true));
+                CatalogSnapshot snapshot = ar1.result();
+                assertThat(snapshot.products().size(), equalTo(2));
+                assertThat(snapshot.products().stream().map(Product::getItemId).collect(Collectors.toSet()),
+                        allOf(hasItem("111111"), hasItem("222222")));
+
+                Product renamed = new Product(product1.toJson().put("name", "productName1b"));
+                service.addProduct(renamed, ar2 -> {
+                    assertThat(ar2.succeeded(), equalTo(true));
+                    // a restarted service answers from the snapshot, then from the database
+                    CatalogServiceImpl restarted = new CatalogServiceImpl(vertx, config, mongoClient, mongoClient);
+                    restarted.warmUp(snapshot);
+                    restarted.getProduct("111111", ar3 -> {
+                        assertThat(ar3.result().getName(), equalTo("productName1"));
+                        restarted.reconcile(snapshot, ar4 -> {
+                            assertThat(ar4.result(), equalTo(1));
+                            restarted.getProducts(ar5 -> {
+                                assertThat(ar5.result().size(), equalTo(2));
+                                restarted.getProduct("111111", ar6 -> {
+                                    assertThat(ar6.result().getName(), equalTo("productName1b"));
+                                    async.complete();
+                                });
+                            });
+                        });
+                    });
+                });
+            });
+        });
+    }
+
+    @Test
+    public void testGetProductsWithFields(TestContext context) throws Exception {
+        Async saveAsync = context.async();
+        JsonObject json = new JsonObject()
+                .put("itemId", "111111")
+                .put("name", "productName1")
+                .put("desc", "productDescription1")
+                .put("price", new Double(100.0));
+        mongoClient.save("products", json, ar -> {
+            if (ar.failed()) {
+                context.fail();
+            }
+            saveAsync.complete();
+        });
+        saveAsync.await();
+
+        // read from the database, and then from the cache
+        CatalogService service = CatalogService.create(vertx, getConfig(), mongoClient, mongoClient);
+        List<String> fields = Arrays.asList("name", "price", "version");
+        JsonObject expected = new JsonObject()
+                .put("itemId", "111111")
+                .put("name", "productName1")
+                .put("price", 100.0);
+
+        Async async = context.async();
+        service.getProductsWithFields(fields, ar -> {
+            assertThat(ar.succeeded(), equalTo(true));
+            assertThat(ar.result().size(), equalTo(1));
+            assertThat(ar.result().get(0), equalTo(expected));
+            service.getProductWithFields("111111", fields, ar1 -> {
+                assertThat(ar1.result(), equalTo(expected));
+                service.getProduct("111111", ar2 -> {
+                    service.getProductWithFields("111111", fields, ar3 -> {
+                        assertThat(ar3.result(), equalTo(expected));
+                        service.getProductWithFields("222222", fields, ar4 -> {
+                            assertThat(ar4.succeeded(), equalTo(true));
+                            assertThat(ar4.result(), nullValue());
+                            async.complete();
+                        });
+                    });
+                });
+            });
+        });
+    }
+
     @Test
     public void testPing(TestContext context) throws Exception {
-        CatalogService service = new CatalogServiceImpl(vertx, getConfig(), mongoClient);
+        CatalogService service = CatalogService.create(vertx, getConfig(), mongoClient, mongoClient);
 
         Async async = context.async();
         service.ping(ar -> {
@@ -0,0 +1,72 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.coolstore.catalog.model.Product;
+
+public class CatalogSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Product product(String itemId, String name, String desc, double price) {
+        Product product = new Product();
+        product.setItemId(itemId);
+        product.setName(name);
+        product.setDesc(desc);
+        product.setPrice(price);
+        return product;
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("snapshots/catalog.snapshot");
+        new CatalogSnapshot(42, 1000, Arrays.asList(
+                product("111111", "productName1", "productDescription1", 100.0),
+                product("222222", "Produit été ☃", null, 0.5))).write(file);
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+        assertThat(snapshot.version(), equalTo(42L));
+        assertThat(snapshot.timestamp(), equalTo(1000L));
+        assertThat(snapshot.products().size(), equalTo(2));
+        assertThat(snapshot.products().get(0).toJson(),
+                equalTo(product("111111", "productName1", "productDescription1", 100.0).toJson()));
+        assertThat(snapshot.products().get(1).getName(), equalTo("Produit été ☃"));
+        assertThat(snapshot.products().get(1).getDesc(), nullValue());
+        assertThat(snapshot.products().get(1).getPrice(), equalTo(0.5));
+
+        // replaced as a whole
+        new CatalogSnapshot(43, 2000, Arrays.asList()).write(file);
+        assertThat(CatalogSnapshot.read(file).products().size(), equalTo(0));
+        assertThat(folder.getRoot().toPath().resolve("snapshots").toFile().list().length, equalTo(1));
+    }
+
+    @Test
+    public void testMissingFile() throws Exception {
+        assertThat(CatalogSnapshot.read(folder.getRoot().toPath().resolve("catalog.snapshot")), nullValue());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptFile() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("catalog.snapshot");
+        new CatalogSnapshot(42, 1000, Arrays.asList(
+                product("111111", "productName1", "productDescription1", 100.0))).write(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(40);
+            raf.write('X');
+        }
+        CatalogSnapshot.read(file);
+    }
+
+}
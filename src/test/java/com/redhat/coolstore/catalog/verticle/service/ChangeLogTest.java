@@ -0,0 +1,89 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+
+public class ChangeLogTest {
+
+    private JsonObject change(long version, long timestamp) {
+        return new JsonObject()
+                .put("version", version)
+                .put("timestamp", timestamp)
+                .put("product", new JsonObject().put("itemId", "item" + version));
+    }
+
+    private List<Long> versions(List<JsonObject> changes) {
+        return changes.stream().map(c -> c.getLong("version")).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSince() {
+        ChangeLog log = new ChangeLog(10);
+        log.add(change(11, 0));
+        assertThat(log.since(10, 10, 11), nullValue());
+
+        log.start(10);
+        log.add(change(12, 0));
+        log.add(change(13, 0));
+        assertThat(versions(log.since(10, 10, 13)), equalTo(Arrays.asList(11L, 12L, 13L)));
+        assertThat(versions(log.since(11, 1, 13)), equalTo(Arrays.asList(12L)));
+        assertThat(versions(log.since(13, 10, 13)), equalTo(Collections.<Long>emptyList()));
+        // changes before the start are only known to the database
+        assertThat(log.since(9, 10, 13), nullValue());
+    }
+
+    @Test
+    public void testGaps() {
+        ChangeLog log = new ChangeLog(10);
+        log.start(10);
+        log.add(change(11, 0));
+        log.add(change(13, 0));
+        // version 12 was written by another instance, or is still being written
+        assertThat(log.since(10, 10, 13), nullValue());
+        assertThat(versions(log.since(10, 1, 13)), equalTo(Arrays.asList(11L)));
+        assertThat(versions(log.since(12, 10, 13)), equalTo(Arrays.asList(13L)));
+        // versions 14 and 15 were written by another instance
+        assertThat(log.since(12, 10, 15), nullValue());
+        assertThat(log.since(13, 10, 15), nullValue());
+    }
+
+    @Test
+    public void testEviction() {
+        ChangeLog log = new ChangeLog(2);
+        log.start(0);
+        log.add(change(1, 0));
+        log.add(change(2, 0));
+        log.add(change(3, 0));
+        assertThat(log.size(), equalTo(2));
+        assertThat(log.since(0, 10, 3), nullValue());
+        assertThat(versions(log.since(1, 10, 3)), equalTo(Arrays.asList(2L, 3L)));
+    }
+
+    @Test
+    public void testCursor() {
+        long now = 10000;
+        List<JsonObject> contiguous = Arrays.asList(change(5, now), change(6, now));
+        assertThat(ChangeLog.cursor(4, contiguous, now, 1000), equalTo(6L));
+
+        // version 6 may still be written
+        List<JsonObject> recentGap = Arrays.asList(change(5, now), change(7, now));
+        assertThat(ChangeLog.cursor(4, recentGap, now, 1000), equalTo(5L));
+
+        // version 6 was allocated too long ago, it is not coming anymore
+        List<JsonObject> oldGap = Arrays.asList(change(5, now - 2000), change(7, now - 2000));
+        assertThat(ChangeLog.cursor(4, oldGap, now, 1000), equalTo(7L));
+
+        assertThat(ChangeLog.cursor(4, Collections.<JsonObject>emptyList(), now, 1000), equalTo(4L));
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class CircuitBreakerTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private AsyncResult<String> call(CircuitBreaker breaker, AsyncResult<String> outcome) {
+        List<AsyncResult<String>> results = new ArrayList<>();
+        breaker.<String>execute(h -> h.handle(outcome), results::add);
+        return results.get(0);
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(vertx, 2, 100, 0, new CatalogMetrics());
+        call(breaker, Future.failedFuture("down"));
+        call(breaker, Future.succeededFuture("ok"));
+        call(breaker, Future.failedFuture("down"));
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.CLOSED));
+        call(breaker, Future.failedFuture("down"));
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.OPEN));
+        assertThat(CatalogHealth.get(vertx).servingStale(), equalTo(true));
+
+        // fails fast without calling
+        AsyncResult<String> rejected = call(breaker, null);
+        assertThat(rejected.cause(), instanceOf(CircuitBreaker.OpenException.class));
+
+        Thread.sleep(150);
+        // the trial call fails, the breaker opens again
+        call(breaker, Future.failedFuture("down"));
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.OPEN));
+
+        Thread.sleep(150);
+        assertThat(call(breaker, Future.succeededFuture("ok")).result(), equalTo("ok"));
+        assertThat(breaker.state(), equalTo(CircuitBreaker.State.CLOSED));
+        assertThat(CatalogHealth.get(vertx).servingStale(), equalTo(false));
+    }
+
+    @Test
+    public void testCallTimeout(TestContext context) {
+        CircuitBreaker breaker = new CircuitBreaker(vertx, 1, 10000, 100, new CatalogMetrics());
+        Async async = context.async();
+        // never completes
+        breaker.<String>execute(h -> { }, ar -> {
+            context.assertTrue(ar.cause() instanceof TimeoutException);
+            context.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+            async.complete();
+        });
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class IndexManagerTest extends MongoTestBase {
+
+    private Vertx vertx;
+
+    @Before
+    public void setup(TestContext context) throws Exception {
+        vertx = Vertx.vertx();
+        vertx.exceptionHandler(context.exceptionHandler());
+        mongoClient = MongoClient.createNonShared(vertx, getConfig());
+        Async async = context.async();
+        dropCollection(mongoClient, "products", async, context);
+        async.await(10000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mongoClient.close();
+        vertx.close();
+    }
+
+    @Test
+    public void testEnsureIndexes(TestContext context) throws Exception {
+        IndexManager indexManager = new IndexManager(mongoClient, "products")
+                .declare(new JsonObject().put("_id", 1))
+                .declare(new JsonObject().put("itemId", 1))
+                .declare(new JsonObject().put("price", 1));
+
+        Async created = context.async();
+        indexManager.ensureIndexes(context.asyncAssertSuccess(names -> {
+            assertThat(names.size(), equalTo(2));
+            assertThat(names, hasItem("itemId_1"));
+            assertThat(names, hasItem("price_1"));
+            created.complete();
+        }));
+        created.await();
+
+        Async async = context.async();
+        indexManager.ensureIndexes(context.asyncAssertSuccess(names -> {
+            assertThat(names.size(), equalTo(0));
+            async.complete();
+        }));
+    }
+
+}
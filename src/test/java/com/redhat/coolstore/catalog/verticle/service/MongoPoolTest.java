@@ -0,0 +1,124 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class MongoPoolTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testWaitsForAConnection(TestContext context) {
+        MongoPool pool = new MongoPool(vertx, "test", 1, 1, 10000, new CatalogMetrics());
+        List<Handler<AsyncResult<String>>> running = new ArrayList<>();
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            pool.<String>execute(running::add, ar -> context.assertEquals("first", ar.result()));
+            pool.<String>execute(h -> h.handle(Future.succeededFuture("second")), ar -> {
+                context.assertEquals("second", ar.result());
+                context.assertEquals(0, pool.inUse());
+                async.complete();
+            });
+            context.assertEquals(1, pool.inUse());
+            context.assertEquals(1, pool.waiting());
+            running.get(0).handle(Future.succeededFuture("first"));
+        });
+    }
+
+    @Test
+    public void testRejectsWhenTheWaitQueueIsFull(TestContext context) {
+        MongoPool pool = new MongoPool(vertx, "test", 1, 1, 10000, new CatalogMetrics());
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            pool.<String>execute(h -> { }, ar -> context.fail());
+            pool.<String>execute(h -> { }, ar -> context.fail());
+            pool.<String>execute(h -> context.fail(), ar -> {
+                context.assertTrue(ar.failed());
+                context.assertEquals(1, pool.waiting());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testWaitTimeout(TestContext context) {
+        MongoPool pool = new MongoPool(vertx, "test", 1, 1, 100, new CatalogMetrics());
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            pool.<String>execute(h -> { }, ar -> context.fail());
+            pool.<String>execute(h -> context.fail(), ar -> {
+                context.assertTrue(ar.failed());
+                context.assertEquals(0, pool.waiting());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testReleasesWhenTheCallThrows() {
+        MongoPool pool = new MongoPool(vertx, "test", 1, 1, 100, new CatalogMetrics());
+        try {
+            pool.<String>execute(h -> {
+                throw new IllegalStateException("closed");
+            }, ar -> { });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertThat(pool.inUse(), equalTo(0));
+    }
+
+    @Test
+    public void testConnectionStrings() {
+        JsonObject config = new JsonObject()
+                .put("connection_string", "mongodb://mongo-0:27017,mongo-1:27017")
+                .put("catalog.mongo.read.max-pool-size", 20)
+                .put("catalog.mongo.read.connect-timeout", 1000)
+                .put("catalog.mongo.write.max-pool-size", 10);
+        assertThat(MongoClientConfig.read(config).getString("connection_string"),
+                equalTo("mongodb://mongo-0:27017,mongo-1:27017/?maxPoolSize=20&waitQueueMultiple=5"
+                        + "&waitQueueTimeoutMS=2000&connectTimeoutMS=1000"
+                        + "&readPreference=secondaryPreferred&maxStalenessSeconds=90"));
+        assertThat(MongoClientConfig.write(config).getString("connection_string"),
+                equalTo("mongodb://mongo-0:27017,mongo-1:27017/?maxPoolSize=10&waitQueueMultiple=5"
+                        + "&waitQueueTimeoutMS=2000&readPreference=primary"));
+        assertThat(MongoClientConfig.maxWaitQueueSize(config, MongoClientConfig.READ), equalTo(100));
+        assertThat(config.getString("connection_string"), equalTo("mongodb://mongo-0:27017,mongo-1:27017"));
+
+        JsonObject local = new JsonObject().put("host", "localhost").put("port", 27018)
+                .put("catalog.mongo.read.read-preference", "primary");
+        assertThat(MongoClientConfig.read(local).getString("connection_string"),
+                equalTo("mongodb://localhost:27018/?maxPoolSize=100&waitQueueMultiple=5"
+                        + "&waitQueueTimeoutMS=2000&readPreference=primary"));
+    }
+
+}
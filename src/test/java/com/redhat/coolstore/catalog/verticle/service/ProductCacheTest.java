@@ -0,0 +1,123 @@
+package com.redhat.coolstore.catalog.verticle.service;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.redhat.coolstore.catalog.metrics.CatalogMetrics;
+import com.redhat.coolstore.catalog.model.Product;
+
+public class ProductCacheTest {
+
+    private long time = 0;
+
+    private CatalogMetrics metrics = new CatalogMetrics();
+
+    private ProductCache cache(int maxSize, long ttl) {
+        return new ProductCache(maxSize, ttl, metrics) {
+            @Override
+            protected long now() {
+                return time;
+            }
+        };
+    }
+
+    private Product product(String itemId) {
+        Product product = new Product();
+        product.setItemId(itemId);
+        product.setName("name" + itemId);
+        product.setPrice(10.0);
+        return product;
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        ProductCache cache = cache(10, 1000);
+        assertThat(cache.get("111111"), nullValue());
+        cache.load(product("111111"), cache.generation());
+        assertThat(cache.get("111111"), notNullValue());
+        assertThat(cache.hits(), equalTo(1L));
+        assertThat(cache.misses(), equalTo(1L));
+    }
+
+    @Test
+    public void testMetricsSumAllCaches() {
+        ProductCache first = cache(1, 1000);
+        ProductCache second = cache(1, 1000);
+        first.get("111111");
+        first.load(product("111111"), first.generation());
+        first.get("111111");
+        second.load(product("111111"), second.generation());
+        second.load(product("222222"), second.generation());
+        second.get("111111");
+        assertThat(first.misses(), equalTo(1L));
+        assertThat(second.misses(), equalTo(1L));
+        String scrape = metrics.scrape();
+        assertThat(scrape, containsString("catalog_cache_hits_total 1\n"));
+        assertThat(scrape, containsString("catalog_cache_misses_total 2\n"));
+        assertThat(scrape, containsString("catalog_cache_evictions_total 1\n"));
+    }
+
+    @Test
+    public void testSizeEviction() {
+        ProductCache cache = cache(2, 1000);
+        cache.load(product("1"), cache.generation());
+        cache.load(product("2"), cache.generation());
+        cache.get("1");
+        cache.load(product("3"), cache.generation());
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.evictions(), equalTo(1L));
+        assertThat(cache.get("2"), nullValue());
+        assertThat(cache.get("1"), notNullValue());
+    }
+
+    @Test
+    public void testTtlEviction() {
+        ProductCache cache = cache(10, 1000);
+        cache.load(product("1"), cache.generation());
+        time = 1000;
+        assertThat(cache.get("1"), nullValue());
+        assertThat(cache.evictions(), equalTo(1L));
+    }
+
+    @Test
+    public void testPutInvalidatesFullCatalog() {
+        ProductCache cache = cache(10, 1000);
+        List<Product> products = new ArrayList<>();
+        products.add(product("1"));
+        cache.loadAll(products, cache.generation());
+        assertThat(cache.getAll(), notNullValue());
+        cache.put(product("2"));
+        assertThat(cache.getAll(), nullValue());
+        assertThat(cache.get("2"), notNullValue());
+    }
+
+    @Test
+    public void testLoadAllLargerThanCache() {
+        ProductCache cache = cache(1, 1000);
+        List<Product> products = new ArrayList<>();
+        products.add(product("1"));
+        products.add(product("2"));
+        cache.loadAll(products, cache.generation());
+        assertThat(cache.getAll(), nullValue());
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    @Test
+    public void testStaleLoadIsDiscarded() {
+        ProductCache cache = cache(10, 1000);
+        long generation = cache.generation();
+        Product written = product("1");
+        cache.put(written);
+        cache.load(product("1"), generation);
+        assertThat(cache.get("1") == written, equalTo(true));
+    }
+
+}